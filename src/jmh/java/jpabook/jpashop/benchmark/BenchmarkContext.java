@@ -0,0 +1,142 @@
+package jpabook.jpashop.benchmark;
+
+import jpabook.jpashop.JpashopApplication;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 벤치마크용 애플리케이션 컨텍스트 (웹 서버 없이, 임베디드 H2 메모리 DB)
+ *
+ * - 설정은 application.yml 그대로 쓰고 DB 연결/로그만 바꾼다 (-Dspring.jpa... 시스템 프로퍼티로 덮어쓸 수 있다)
+ * - readOnly 는 OSIV 가 켜진 것처럼 호출 전체를 읽기 전용 트랜잭션으로 감싼다 (컨트롤러의 지연로딩까지 측정)
+ * - statementCount 는 hibernate 통계의 prepared statement 수, queryPlanCacheMissCount 는 jpql 파싱(plan 생성) 수
+ */
+public class BenchmarkContext implements AutoCloseable {
+
+    private static final int SEED_CHUNK = 500;
+
+    private final ConfigurableApplicationContext context;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTemplate;
+    private final Statistics statistics;
+
+    private BenchmarkContext(ConfigurableApplicationContext context) {
+        this.context = context;
+        PlatformTransactionManager transactionManager = context.getBean(PlatformTransactionManager.class);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+        this.statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+    }
+
+    /**
+     * @param properties 추가로 덮어쓸 설정 (key=value)
+     */
+    public static BenchmarkContext start(String... properties) {
+        List<String> args = new ArrayList<>(Arrays.asList(
+                "spring.main.banner-mode=off",
+                "spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+                "spring.jpa.hibernate.ddl-auto=create",
+                "spring.jpa.properties.hibernate.generate_statistics=true",
+                "decorator.datasource.p6spy.enable-logging=false",
+                "logging.level.root=warn",
+                "logging.level.org.hibernate.SQL=warn"));
+        args.addAll(Arrays.asList(properties));
+
+        //application.yml 보다 우선하도록 커맨드라인 인자로 넘긴다
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(JpashopApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.stream().map(arg -> "--" + arg).toArray(String[]::new));
+        return new BenchmarkContext(context);
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public <T> T readOnly(Supplier<T> call) {
+        return readOnlyTemplate.execute(status -> call.get());
+    }
+
+    public long statementCount() {
+        return statistics.getPrepareStatementCount();
+    }
+
+    public long queryPlanCacheMissCount() {
+        return statistics.getQueryPlanCacheMissCount();
+    }
+
+    /**
+     * 회원/상품/주문 생성, 주문마다 itemsPerOrder 개의 상품을 돌아가며 담는다
+     */
+    public void seed(int members, int items, int orders, int itemsPerOrder) {
+        EntityManager em = context.getBean(EntityManager.class);
+
+        List<Long> memberIds = transactionTemplate.execute(status -> {
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0; i < members; i++) {
+                Member member = new Member();
+                member.setName("member" + i);
+                member.setAddress(new Address("city" + i % 10, "street" + i, "zip" + i));
+                em.persist(member);
+                ids.add(member.getId());
+            }
+            return ids;
+        });
+
+        List<Long> itemIds = transactionTemplate.execute(status -> {
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0; i < items; i++) {
+                Book book = new Book();
+                book.setName("book" + i);
+                book.setPrice(1000 + i * 10);
+                book.setStockQuantity(Integer.MAX_VALUE / 2);
+                em.persist(book);
+                ids.add(book.getId());
+            }
+            return ids;
+        });
+
+        for (int from = 0; from < orders; from += SEED_CHUNK) {
+            int start = from;
+            int end = Math.min(from + SEED_CHUNK, orders);
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int i = start; i < end; i++) {
+                    Member member = em.find(Member.class, memberIds.get(i % memberIds.size()));
+                    OrderItem[] orderItems = new OrderItem[itemsPerOrder];
+                    for (int j = 0; j < itemsPerOrder; j++) {
+                        Item item = em.find(Item.class, itemIds.get((i + j) % itemIds.size()));
+                        orderItems[j] = OrderItem.createOrderItem(item, item.getPrice(), 1 + j);
+                    }
+                    Delivery delivery = new Delivery();
+                    delivery.setAddress(member.getAddress());
+                    em.persist(Order.createOrder(member, delivery, orderItems));
+                }
+            });
+        }
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
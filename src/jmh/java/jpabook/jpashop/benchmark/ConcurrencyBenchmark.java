@@ -0,0 +1,94 @@
+package jpabook.jpashop.benchmark;
+
+import jpabook.jpashop.config.VirtualThreads;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.service.MemberService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 플랫폼 스레드 풀 vs 가상 스레드 동시 처리 비교
+ *
+ * 요청 tasks 개를 한 번에 넣고 모두 끝날 때까지가 1 op
+ * 요청 하나 = MemberService.findOne(짧은 db 조회) + latencyMs 만큼 외부 호출 대기(커넥션을 쥐지 않은 채로 block)
+ * - platform : 스레드 platformThreads 개 (tomcat 기본 max 200) -> 동시 처리 수가 스레드 수에서 막힌다
+ * - virtual : 요청마다 가상 스레드 (JDK 21 이상, jpashop.virtual-threads.enabled=true 로 JDBC 제한까지 켠다)
+ *
+ * 가상 스레드는 JDK 21 이상에서 : java -jar build/libs/jpashop-0.0.1-SNAPSHOT-jmh.jar ConcurrencyBenchmark
+ * JDK 21 미만이면 virtual 은 실행하지 않는다 (setup 에서 실패)
+ *
+ * 이론상 최소 시간 : platform = ceil(tasks / platformThreads) * latencyMs, virtual = latencyMs (+ db 조회)
+ */
+@State(Scope.Benchmark)
+public class ConcurrencyBenchmark {
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"1000"})
+    public int tasks;
+
+    @Param({"200"})
+    public int platformThreads;
+
+    @Param({"20"})
+    public int latencyMs;
+
+    private BenchmarkContext context;
+    private MemberService memberService;
+    private Long memberId;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        boolean virtual = "virtual".equals(threads);
+        if (virtual && !VirtualThreads.isSupported()) {
+            throw new IllegalStateException("가상 스레드는 JDK 21 이상에서 실행해야 합니다. java.version=" + System.getProperty("java.version"));
+        }
+        context = BenchmarkContext.start("jpashop.virtual-threads.enabled=" + virtual);
+        context.seed(10, 10, 100, 2);
+        memberService = context.getBean(MemberService.class);
+        memberId = memberService.findMembers().get(0).getId();
+        executor = virtual
+                ? VirtualThreads.newExecutor("bench-vt-").orElseThrow(IllegalStateException::new)
+                : Executors.newFixedThreadPool(platformThreads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        context.close();
+    }
+
+    @Benchmark
+    public int requests() throws Exception {
+        List<Future<String>> futures = new ArrayList<>(tasks);
+        for (int i = 0; i < tasks; i++) {
+            futures.add(executor.submit(() -> {
+                Member member = memberService.findOne(memberId);
+                Thread.sleep(latencyMs);   //외부 api 호출 등
+                return member.getName();
+            }));
+        }
+
+        int completed = 0;
+        for (Future<String> future : futures) {
+            future.get();
+            completed++;
+        }
+        return completed;
+    }
+}
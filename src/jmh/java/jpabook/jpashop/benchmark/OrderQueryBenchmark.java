@@ -0,0 +1,137 @@
+package jpabook.jpashop.benchmark;
+
+import jpabook.jpashop.api.OrderApiController;
+import jpabook.jpashop.api.OrderSimpleApiController;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.function.Supplier;
+
+/**
+ * 주문 조회 전략(V1 ~ V6)별 처리량/응답시간/할당률/SQL 수 비교
+ *
+ * ./gradlew jmh
+ * 데이터 양 변경 : java -jar build/libs/jpashop-0.0.1-SNAPSHOT-jmh.jar OrderQueryBenchmark -p orders=10000 -p items=500
+ *
+ * 결과 JSON 의 secondaryMetrics 에 statements(실행한 sql 수)/calls(호출 수) 가 같이 기록된다 -> 호출당 sql 수 = statements / calls
+ */
+@State(Scope.Benchmark)
+public class OrderQueryBenchmark {
+
+    @Param({"1000"})
+    public int orders;
+
+    @Param({"100"})
+    public int items;
+
+    @Param({"2"})
+    public int itemsPerOrder;
+
+    private BenchmarkContext context;
+    private OrderApiController orderApi;
+    private OrderSimpleApiController simpleOrderApi;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        context.seed(Math.max(orders / 10, 1), items, orders, itemsPerOrder);
+        orderApi = context.getBean(OrderApiController.class);
+        simpleOrderApi = context.getBean(OrderSimpleApiController.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class SqlCounters {
+        public long statements;
+        public long calls;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            statements = 0;
+            calls = 0;
+        }
+    }
+
+    private Object measure(SqlCounters counters, Supplier<Object> query) {
+        long before = context.statementCount();
+        Object result = context.readOnly(query);
+        counters.statements += context.statementCount() - before;
+        counters.calls++;
+        return result;
+    }
+
+    //== 주문 (x to many) ==//
+
+    @Benchmark
+    public Object orders_v1_entity(SqlCounters counters) {
+        return measure(counters, orderApi::ordersV1);
+    }
+
+    @Benchmark
+    public Object orders_v2_dto(SqlCounters counters) {
+        return measure(counters, orderApi::ordersV2);
+    }
+
+    @Benchmark
+    public Object orders_v2_1_batchLoad(SqlCounters counters) {
+        return measure(counters, orderApi::ordersV2_batch);
+    }
+
+    @Benchmark
+    public Object orders_v3_fetchJoin(SqlCounters counters) {
+        return measure(counters, orderApi::ordersV3);
+    }
+
+    @Benchmark
+    public Object orders_v3_1_batchSizePaging(SqlCounters counters) {
+        return measure(counters, () -> orderApi.ordersV3_page(0, orders));
+    }
+
+    @Benchmark
+    public Object orders_v4_dtoQuery(SqlCounters counters) {
+        return measure(counters, orderApi::ordersV4);
+    }
+
+    @Benchmark
+    public Object orders_v5_dtoIn(SqlCounters counters) {
+        return measure(counters, orderApi::ordersV5);
+    }
+
+    @Benchmark
+    public Object orders_v5_1_parallel(SqlCounters counters) {
+        return measure(counters, () -> orderApi.ordersV5_parallel(0, orders));
+    }
+
+    @Benchmark
+    public Object orders_v6_flat(SqlCounters counters) {
+        return measure(counters, orderApi::ordersV6);
+    }
+
+    //== 주문 (x to one) ==//
+
+    @Benchmark
+    public Object simpleOrders_v2_dto(SqlCounters counters) {
+        return measure(counters, simpleOrderApi::ordersV2);
+    }
+
+    @Benchmark
+    public Object simpleOrders_v3_fetchJoin(SqlCounters counters) {
+        return measure(counters, simpleOrderApi::ordersV3);
+    }
+
+    @Benchmark
+    public Object simpleOrders_v4_dtoQuery(SqlCounters counters) {
+        return measure(counters, simpleOrderApi::ordersV4);
+    }
+}
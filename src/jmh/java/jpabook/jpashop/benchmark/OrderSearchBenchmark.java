@@ -0,0 +1,96 @@
+package jpabook.jpashop.benchmark;
+
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.NameMatch;
+import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.OrderSearch;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.function.Function;
+
+/**
+ * 주문 동적 검색 방식별 비교 - jpql 문자열 조립 / Criteria / OrderSearchEngine(조건 모양별 jpql 캐시)
+ *
+ * ./gradlew jmh -Pjmh.includes=OrderSearchBenchmark
+ * 조건 모양은 같고 값(회원 이름)만 호출마다 바뀐다 -> 조회 자체보다 쿼리 조립/파싱 비용 차이를 본다
+ *
+ * 결과 JSON 의 secondaryMetrics 에 planMisses(hibernate 가 jpql 을 새로 파싱한 수)/calls 가 같이 기록된다
+ */
+@State(Scope.Benchmark)
+public class OrderSearchBenchmark {
+
+    @Param({"1000"})
+    public int orders;
+
+    @Param({"100"})
+    public int members;
+
+    private BenchmarkContext context;
+    private OrderRepository orderRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        context.seed(members, 100, orders, 2);
+        orderRepository = context.getBean(OrderRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class SearchCounters {
+        public long planMisses;
+        public long calls;
+        private int next;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            planMisses = 0;
+            calls = 0;
+        }
+
+        //회원 한 명의 주문만 나오도록 이름은 정확히 일치
+        OrderSearch nextSearch(int members) {
+            OrderSearch orderSearch = new OrderSearch();
+            orderSearch.setOrderStatus(OrderStatus.ORDER);
+            orderSearch.setMemberName("member" + (next++ % members));
+            orderSearch.setNameMatch(NameMatch.EXACT);
+            return orderSearch;
+        }
+    }
+
+    private Object measure(SearchCounters counters, Function<OrderSearch, Object> search) {
+        OrderSearch orderSearch = counters.nextSearch(members);
+        long before = context.queryPlanCacheMissCount();
+        Object result = context.readOnly(() -> search.apply(orderSearch));
+        counters.planMisses += context.queryPlanCacheMissCount() - before;
+        counters.calls++;
+        return result;
+    }
+
+    @Benchmark
+    public Object search_jpqlString(SearchCounters counters) {
+        return measure(counters, orderRepository::findAllByString);
+    }
+
+    @Benchmark
+    public Object search_criteria(SearchCounters counters) {
+        return measure(counters, orderRepository::findAllByCriteria);
+    }
+
+    @Benchmark
+    public Object search_engine(SearchCounters counters) {
+        return measure(counters, orderRepository::findAll);
+    }
+}
@@ -30,6 +30,10 @@ public class QMember extends EntityPathBase<Member> {
 
     public final ListPath<Order, QOrder> orders = this.<Order, QOrder>createList("orders", Order.class, QOrder.class, PathInits.DIRECT2);
 
+    public final StringPath searchName = createString("searchName");
+
+    public final NumberPath<Long> version = createNumber("version", Long.class);
+
     public QMember(String variable) {
         this(Member.class, forVariable(variable), INITS);
     }
@@ -0,0 +1,63 @@
+package jpabook.jpashop.domain;
+
+import static com.querydsl.core.types.PathMetadataFactory.*;
+
+import com.querydsl.core.types.dsl.*;
+
+import com.querydsl.core.types.PathMetadata;
+import javax.annotation.Generated;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.dsl.PathInits;
+
+
+/**
+ * QOrderSummary is a Querydsl query type for OrderSummary
+ */
+@Generated("com.querydsl.codegen.EntitySerializer")
+public class QOrderSummary extends EntityPathBase<OrderSummary> {
+
+    private static final long serialVersionUID = 1891747771L;
+
+    private static final PathInits INITS = PathInits.DIRECT2;
+
+    public static final QOrderSummary orderSummary = new QOrderSummary("orderSummary");
+
+    public final QAddress address;
+
+    public final NumberPath<Integer> itemCount = createNumber("itemCount", Integer.class);
+
+    public final NumberPath<Long> memberId = createNumber("memberId", Long.class);
+
+    public final StringPath memberName = createString("memberName");
+
+    public final DateTimePath<java.time.LocalDateTime> orderDate = createDateTime("orderDate", java.time.LocalDateTime.class);
+
+    public final NumberPath<Long> orderId = createNumber("orderId", Long.class);
+
+    public final EnumPath<OrderStatus> status = createEnum("status", OrderStatus.class);
+
+    public final NumberPath<Integer> totalPrice = createNumber("totalPrice", Integer.class);
+
+    public QOrderSummary(String variable) {
+        this(OrderSummary.class, forVariable(variable), INITS);
+    }
+
+    public QOrderSummary(Path<? extends OrderSummary> path) {
+        this(path.getType(), path.getMetadata(), PathInits.getFor(path.getMetadata(), INITS));
+    }
+
+    public QOrderSummary(PathMetadata metadata) {
+        this(metadata, PathInits.getFor(metadata, INITS));
+    }
+
+    public QOrderSummary(PathMetadata metadata, PathInits inits) {
+        this(OrderSummary.class, metadata, inits);
+    }
+
+    public QOrderSummary(Class<? extends OrderSummary> type, PathMetadata metadata, PathInits inits) {
+        super(type, metadata, inits);
+        this.address = inits.isInitialized("address") ? new QAddress(forProperty("address")) : null;
+    }
+
+}
+
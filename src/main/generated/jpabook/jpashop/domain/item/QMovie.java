@@ -40,6 +40,9 @@ public class QMovie extends EntityPathBase<Movie> {
     //inherited
     public final NumberPath<Integer> stockQuantity = _super.stockQuantity;
 
+    //inherited
+    public final NumberPath<Long> version = _super.version;
+
     public QMovie(String variable) {
         super(Movie.class, forVariable(variable));
     }
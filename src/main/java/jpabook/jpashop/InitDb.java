@@ -3,10 +3,13 @@ package jpabook.jpashop;
 import jpabook.jpashop.domain.*;
 import jpabook.jpashop.domain.item.Book;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
-import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
 
 @Component
@@ -15,7 +18,9 @@ public class InitDb {
 
     private final InitService initService;
 
-    @PostConstruct
+    //@PostConstruct 시점에는 @EventListener 가 아직 등록되지 않아 주문 이벤트(order_summary 갱신)가 전달되지 않는다
+    @EventListener(ApplicationReadyEvent.class)
+    @org.springframework.core.annotation.Order(Ordered.HIGHEST_PRECEDENCE)  //상품 검색 인덱스 생성 등 다른 ApplicationReadyEvent 처리보다 먼저 데이터를 넣는다
     public void init(){
         initService.dbInit1();
         initService.dbInit2();
@@ -28,6 +33,7 @@ public class InitDb {
     static class InitService{
 
         private final EntityManager em;
+        private final ApplicationEventPublisher eventPublisher;   //order_summary 갱신
         public void dbInit1(){
             Member member = createMember("userA", "seoul", "1", "1111");
             em.persist(member);
@@ -45,6 +51,7 @@ public class InitDb {
             Delivery delivery = createDelivery(member);
             Order order = Order.createOrder(member, delivery, orderItem1, orderItem2);
             em.persist(order);
+            eventPublisher.publishEvent(new OrderPlacedEvent(order));
 
         }
 
@@ -86,6 +93,7 @@ public class InitDb {
             Delivery delivery = createDelivery(member);
             Order order = Order.createOrder(member, delivery, orderItem1, orderItem2);
             em.persist(order);
+            eventPublisher.publishEvent(new OrderPlacedEvent(order));
 
         }
 
@@ -0,0 +1,27 @@
+package jpabook.jpashop.aop;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 낙관적 락 충돌(@Version) 시 트랜잭션을 새로 시작해서 다시 실행한다
+ * 트랜잭션 바깥에서 감싸야 하므로 @Transactional 메서드에 함께 붙인다 (이미 트랜잭션 안에서 호출되면 재시도하지 않는다)
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface OptimisticRetry {
+
+    /**
+     * 최초 실행 포함 최대 실행 횟수
+     */
+    int maxAttempts() default 5;
+
+    /**
+     * 첫 재시도 대기 시간(ms), 재시도마다 2배씩 늘리고 0 ~ 대기 시간 사이에서 무작위로 고른다
+     */
+    long backoffMs() default 10;
+
+    long maxBackoffMs() default 200;
+}
@@ -0,0 +1,87 @@
+package jpabook.jpashop.aop;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.hibernate.StaleStateException;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.OptimisticLockException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @OptimisticRetry 처리
+ *
+ * 트랜잭션 advice(LOWEST_PRECEDENCE) 보다 바깥에서 실행되어야 재시도마다 새 트랜잭션/영속성 컨텍스트로 다시 조회한다
+ * 충돌이 없으면 한 번 실행으로 끝나고, 충돌한 경우만 지터를 준 지수 백오프 후 재시도한다
+ *
+ * 메트릭 (method 태그)
+ * - jpashop.optimistic.conflicts : 충돌 횟수
+ * - jpashop.optimistic.retries : 재시도 횟수
+ * - jpashop.optimistic.failures : 재시도를 다 쓰고 실패한 횟수
+ */
+@Slf4j
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+@RequiredArgsConstructor
+public class OptimisticRetryAspect {
+
+    private final MeterRegistry meterRegistry;
+
+    @Around("@annotation(retry)")
+    public Object retry(ProceedingJoinPoint joinPoint, OptimisticRetry retry) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();    //바깥 트랜잭션이 롤백 대상이 되므로 여기서 재시도할 수 없다
+        }
+
+        String method = joinPoint.getSignature().toShortString();
+        long backoff = retry.backoffMs();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return joinPoint.proceed();
+            } catch (RuntimeException e) {
+                if (!isConflict(e)) {
+                    throw e;
+                }
+                meterRegistry.counter("jpashop.optimistic.conflicts", "method", method).increment();
+                if (attempt >= retry.maxAttempts()) {
+                    meterRegistry.counter("jpashop.optimistic.failures", "method", method).increment();
+                    throw e;
+                }
+                meterRegistry.counter("jpashop.optimistic.retries", "method", method).increment();
+                log.debug("낙관적 락 충돌, 재시도합니다. method={}, attempt={}", method, attempt);
+
+                sleep(ThreadLocalRandom.current().nextLong(backoff + 1));
+                backoff = Math.min(backoff * 2, retry.maxBackoffMs());
+            }
+        }
+    }
+
+    private boolean isConflict(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof OptimisticLockingFailureException
+                    || t instanceof OptimisticLockException
+                    || t instanceof StaleStateException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("재시도 대기 중 중단되었습니다.", e);
+        }
+    }
+}
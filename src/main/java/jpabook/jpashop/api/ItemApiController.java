@@ -0,0 +1,81 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.service.ItemBulkJob;
+import jpabook.jpashop.service.ItemBulkService;
+import jpabook.jpashop.service.ItemSearchResult;
+import jpabook.jpashop.service.ItemService;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+@RestController
+@RequiredArgsConstructor
+public class ItemApiController {
+
+    private final ItemService itemService;
+    private final ItemBulkService itemBulkService;
+
+    /**
+     * 상품 검색 - 상품명/저자/isbn/아티스트/감독/배우에서 검색어 토큰이 모두 (prefix 로) 일치하는 상품을 점수 순으로
+     * ex) /api/items/search?q=jpa boo&limit=10
+     */
+    @GetMapping("/api/items/search")
+    public List<ItemSearchResult> search(
+            @RequestParam("q") String query,
+            @RequestParam(value = "limit", defaultValue = "10") int limit)
+    {
+        return itemService.searchItems(query, Math.min(limit, 100));
+    }
+
+    /**
+     * 카테고리 상품 가격 일괄 변경 - 비동기로 실행하고 진행 상황을 볼 수 있는 작업을 돌려준다
+     * ex) POST /api/items/price-change {"categoryId": 1, "percent": -10}
+     * 비율 변경이라 다시 실행하면 중복 적용된다, 실패한 작업은 {"categoryId": 1, "percent": -10, "afterId": 실패한 job 의 lastCommittedId} 로 이어서 실행
+     */
+    @PostMapping("/api/items/price-change")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public ItemBulkJob changePrice(@RequestBody ChangePriceRequest request) {
+        return itemBulkService.submitPriceChange(request.getCategoryId(), request.getPercent(), request.getAfterId());
+    }
+
+    /**
+     * 재고 일괄 import - multipart file 로 csv("상품 id,재고 수량") 업로드
+     */
+    @PostMapping("/api/items/stock-import")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public ItemBulkJob importStock(@RequestParam("file") MultipartFile file) throws IOException {
+        Path csv = Files.createTempFile("stock-import-", ".csv");
+        file.transferTo(csv);   //요청이 끝나면 업로드 파일이 지워지므로 옮겨 둔다
+        return itemBulkService.submitStockImport(csv);
+    }
+
+    /**
+     * 대량 작업 진행 상황 (processed/total, updated, skipped, errors)
+     */
+    @GetMapping("/api/items/bulk-jobs/{jobId}")
+    public ResponseEntity<ItemBulkJob> bulkJob(@PathVariable("jobId") String jobId) {
+        ItemBulkJob job = itemBulkService.findJob(jobId);
+        return job == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(job);
+    }
+
+    @Data
+    static class ChangePriceRequest {
+        private Long categoryId;
+        private int percent;
+        private Long afterId;
+    }
+}
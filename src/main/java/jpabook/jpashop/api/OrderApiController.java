@@ -4,27 +4,39 @@ import jpabook.jpashop.domain.Address;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderItem;
 import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.exception.BadRequestException;
 import jpabook.jpashop.repository.OrderRepository;
 import jpabook.jpashop.repository.OrderSearch;
 import jpabook.jpashop.repository.order.query.OrderFlatDto;
-import jpabook.jpashop.repository.order.query.OrderItemQueryDto;
 import jpabook.jpashop.repository.order.query.OrderQueryDto;
 import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import jpabook.jpashop.repository.order.query.OrderTotalByDayDto;
+import jpabook.jpashop.repository.order.query.OrderTotalByMemberDto;
+import jpabook.jpashop.service.BulkOrderDto;
+import jpabook.jpashop.service.DbTaskExecutor;
 import jpabook.jpashop.service.OrderService;
+import jpabook.jpashop.service.query.OrderCursorPage;
 import jpabook.jpashop.service.query.OrderDto;
+import jpabook.jpashop.service.query.OrderExportService;
 import jpabook.jpashop.service.query.OrderQueryService;
+import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
-import static java.util.stream.Collectors.*;
-
 
 /**
  * order simple api controller 와는 달리
@@ -36,6 +48,9 @@ public class OrderApiController {
     private final OrderRepository orderRepository;
     private final OrderQueryRepository orderQueryRepository;
     private final OrderQueryService orderQueryService;
+    private final OrderExportService orderExportService;
+    private final OrderService orderService;
+    private final DbTaskExecutor dbTaskExecutor;
 
     /**
      * 엔티티를 조회해서 그대로 반환 V1
@@ -56,6 +71,15 @@ public class OrderApiController {
         return orderQueryService.ordersV2(new OrderSearch());
     }
 
+    /**
+     * 엔티티 조회 후 DTO로 변환 V2.1 - DTO 가 필요한 연관관계를 타입별로 모아서 한 번에 조회
+     * @return
+     */
+    @GetMapping("/api/v2.1/orders")
+    public List<OrderDto> ordersV2_batch(){
+        return orderQueryService.ordersV2Batch(new OrderSearch());
+    }
+
     // 여기서 join fetch 를 하는 순간 주문이 2개에 한 주문 당 아이템이 2개씩이니 4 row가 출력된다, 1:n인 경우 n만큼 출력된다 --> distinct!
     // *************** 중요 ************ //
     //페이징 안됨 ......!       //
@@ -95,6 +119,19 @@ public class OrderApiController {
         return collect;
     }
 
+    /**
+     * 커서(keyset) 페이징 V3.2
+     * offset 대신 이전 응답의 nextCursor 를 넘겨 다음 페이지를 조회한다
+     * @return
+     */
+    @GetMapping("/api/v3.2/orders")
+    public OrderCursorPage ordersV3_cursor(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "100") int limit)
+    {
+        return orderQueryService.ordersV3Cursor(cursor, limit);
+    }
+
     /**
      * JPA에서 DTO를 직접 조회 V4
      * @return
@@ -113,23 +150,222 @@ public class OrderApiController {
         return orderQueryRepository.findAllByDto_optimization();
     }
 
+    /**
+     * 컬렉션 조회 최적화 + 병렬 조회 V5.1
+     * 주문을 페이징 조회한 뒤 주문상품 / 상품 / 배송지를 각자 커넥션에서 동시에 조회해서 합친다
+     * @return
+     */
+    @GetMapping("/api/v5.1/orders")
+    public List<OrderQueryDto> ordersV5_parallel(
+            @RequestParam(value = "offset", defaultValue = "0") int offset,
+            @RequestParam(value = "limit", defaultValue = "100") int limit)
+    {
+        if (offset < 0 || limit < 1 || limit > 1000) {
+            throw new BadRequestException("offset 은 0 이상, limit 은 1 ~ 1000 사이여야 합니다.");
+        }
+        return orderQueryRepository.findAllByDto_parallel(offset, limit);
+    }
+
     /**
      * 플랫 데이터 최적화 - JOIN 결과를 그대로 조회 후 애플리케이션에서 원하는 모양으로 직접 변환 V6
+     * order_id 로 정렬된 row 를 한 번 훑으면서 조립 (groupingBy 처럼 row 마다 키를 만들고 해싱하지 않는다)
      * @return
      */
     @GetMapping("/api/v6/orders")
     public List<OrderQueryDto> ordersV6(){
         List<OrderFlatDto> flats = orderQueryRepository.findAllByDto_flat();
+        return OrderQueryRepository.ORDER_ASSEMBLER.assemble(flats);
+    }
 
-        return flats.stream()
-                .collect(groupingBy(o -> new OrderQueryDto(o.getOrderId(), o.getName(), o.getOrderDate(), o.getOrderStatus(), o.getAddress()),
-                        mapping(o -> new OrderItemQueryDto(o.getOrderId(), o.getItemName(), o.getOrderPrice(), o.getCount()), toList())
-                )).entrySet().stream()
-                .map(e -> new OrderQueryDto(e.getKey().getOrderId(), e.getKey().getName(), e.getKey().getOrderDate(), e.getKey().getOrderStatus(), e.getKey().getAddress(), e.getValue()))
+    /**
+     * 플랫 데이터 최적화 + order 기준 페이징 V6.1
+     * @return
+     */
+    @GetMapping("/api/v6.1/orders")
+    public List<OrderQueryDto> ordersV6_page(
+            @RequestParam(value = "offset", defaultValue = "0") int offset,
+            @RequestParam(value = "limit", defaultValue = "100") int limit)
+    {
+        if (offset < 0 || limit < 1 || limit > 1000) {
+            throw new BadRequestException("offset 은 0 이상, limit 은 1 ~ 1000 사이여야 합니다.");
+        }
+        return orderQueryRepository.findAllByDto_flat(offset, limit);
+    }
+
+    /**
+     * 비동기 조회 - 요청 스레드는 바로 반환되고 조회는 db 스레드 풀에서 실행된다
+     * db 스레드 풀 큐가 가득 차면 429
+     */
+    @GetMapping("/api/v3/orders/async")
+    public CompletableFuture<List<OrderDto>> ordersV3Async() {
+        return dbTaskExecutor.supply("GET /api/v3/orders/async", orderQueryService::ordersV3);
+    }
+
+    @GetMapping("/api/v3.2/orders/async")
+    public CompletableFuture<OrderCursorPage> ordersV3_cursorAsync(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "100") int limit)
+    {
+        return dbTaskExecutor.supply("GET /api/v3.2/orders/async", () -> orderQueryService.ordersV3Cursor(cursor, limit));
+    }
+
+    @GetMapping("/api/v5/orders/async")
+    public CompletableFuture<List<OrderQueryDto>> ordersV5Async() {
+        return dbTaskExecutor.supply("GET /api/v5/orders/async", orderQueryRepository::findAllByDto_optimization);
+    }
+
+    @GetMapping("/api/v6.1/orders/async")
+    public CompletableFuture<List<OrderQueryDto>> ordersV6_pageAsync(
+            @RequestParam(value = "offset", defaultValue = "0") int offset,
+            @RequestParam(value = "limit", defaultValue = "100") int limit)
+    {
+        if (offset < 0 || limit < 1 || limit > 1000) {
+            throw new BadRequestException("offset 은 0 이상, limit 은 1 ~ 1000 사이여야 합니다.");
+        }
+        return dbTaskExecutor.supply("GET /api/v6.1/orders/async", () -> orderQueryRepository.findAllByDto_flat(offset, limit));
+    }
+
+    /**
+     * 회원별 주문 합계 (취소 주문 제외)
+     */
+    @GetMapping("/api/orders/totals/members")
+    public List<OrderTotalByMemberDto> totalsByMember() {
+        return orderQueryRepository.findTotalsByMember();
+    }
+
+    /**
+     * 일별 주문 합계 (취소 주문 제외), 기간 기본값은 최근 30일
+     */
+    @GetMapping("/api/orders/totals/daily")
+    public List<OrderTotalByDayDto> totalsByDay(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to)
+    {
+        LocalDate end = to == null ? LocalDate.now() : to;
+        LocalDate start = from == null ? end.minusDays(29) : from;
+        return orderQueryRepository.findTotalsByDay(start, end);
+    }
+
+    /**
+     * 주문 전체 export (format = ndjson | csv)
+     * 응답을 모아서 내려주지 않고 조회하는 대로 바로 output stream 에 쓴다
+     */
+    @GetMapping("/api/orders/export")
+    public void exportOrders(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+                             HttpServletResponse response) throws IOException {
+        if (!"csv".equalsIgnoreCase(format) && !"ndjson".equalsIgnoreCase(format)) {
+            throw new BadRequestException("지원하지 않는 format 입니다. " + format);
+        }
+        response.setCharacterEncoding("UTF-8");
+        if ("csv".equalsIgnoreCase(format)) {
+            response.setContentType("text/csv");
+            response.setHeader("Content-Disposition", "attachment; filename=\"orders.csv\"");
+            orderExportService.exportCsv(response.getOutputStream());
+        } else {
+            response.setContentType("application/x-ndjson");
+            response.setHeader("Content-Disposition", "attachment; filename=\"orders.ndjson\"");
+            orderExportService.exportNdjson(response.getOutputStream());
+        }
+    }
+
+    /**
+     * 대량 주문 - 여러 건의 주문(주문마다 상품 여러 개)을 한 번에 생성
+     */
+    @PostMapping("/api/v1/orders/bulk")
+    public CreateBulkOrderResponse saveOrdersBulk(@RequestBody CreateBulkOrderRequest request) {
+        validate(request);
+        List<BulkOrderDto> orders = request.getOrders().stream()
+                .map(o -> new BulkOrderDto(o.getMemberId(), o.getOrderItems().stream()
+                        .map(i -> new BulkOrderDto.OrderLineDto(i.getItemId(), i.getCount()))
+                        .collect(Collectors.toList())))
                 .collect(Collectors.toList());
+        return new CreateBulkOrderResponse(orderService.orderBulk(orders));
     }
 
+    //수량이 0 이하면 재고가 늘고 주문 금액이 음수가 되므로 서비스로 넘기기 전에 막는다
+    private static void validate(CreateBulkOrderRequest request) {
+        if (request.getOrders() == null || request.getOrders().isEmpty()) {
+            throw new BadRequestException("주문이 없습니다.");
+        }
+        for (CreateOrderRequest order : request.getOrders()) {
+            if (order == null || order.getMemberId() == null) {
+                throw new BadRequestException("회원 id 가 없습니다.");
+            }
+            if (order.getOrderItems() == null || order.getOrderItems().isEmpty()) {
+                throw new BadRequestException("주문 상품이 없습니다. memberId=" + order.getMemberId());
+            }
+            for (CreateOrderItemRequest orderItem : order.getOrderItems()) {
+                if (orderItem == null || orderItem.getItemId() == null) {
+                    throw new BadRequestException("상품 id 가 없습니다. memberId=" + order.getMemberId());
+                }
+                if (orderItem.getCount() < 1) {
+                    throw new BadRequestException("주문 수량은 1 이상이어야 합니다. itemId=" + orderItem.getItemId());
+                }
+            }
+        }
+    }
 
-}
+    @Data
+    static class CreateBulkOrderRequest {
+        private List<CreateOrderRequest> orders;
+    }
 
+    @Data
+    static class CreateOrderRequest {
+        private Long memberId;
+        private List<CreateOrderItemRequest> orderItems;
+    }
+
+    @Data
+    static class CreateOrderItemRequest {
+        private Long itemId;
+        private int count;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class CreateBulkOrderResponse {
+        private List<Long> orderIds;
+    }
 
+    /**
+     * 일괄 주문 취소 - orderIds, memberId, 주문일 범위(orderDateFrom/orderDateTo, orderStatus) 중 하나로 대상을 고른다
+     * orderIds 는 배송완료 주문이 있으면 전체 실패, 나머지는 배송완료 주문을 빼고 취소한다
+     */
+    @PostMapping("/api/v1/orders/cancel")
+    public CancelOrdersResponse cancelOrdersBulk(@RequestBody CancelOrdersRequest request) {
+        List<Long> canceled;
+        if (request.getOrderIds() != null && !request.getOrderIds().isEmpty()) {
+            canceled = orderService.cancelOrders(request.getOrderIds());
+        } else if (request.getMemberId() != null) {
+            canceled = orderService.cancelOrdersOfMember(request.getMemberId());
+        } else if (request.getOrderDateFrom() != null || request.getOrderDateTo() != null) {
+            OrderSearch orderSearch = new OrderSearch();
+            orderSearch.setOrderStatus(request.getOrderStatus());
+            orderSearch.setOrderDateFrom(request.getOrderDateFrom());
+            orderSearch.setOrderDateTo(request.getOrderDateTo());
+            canceled = orderService.cancelOrdersMatching(orderSearch);
+        } else {
+            //조건 없이 전체 주문이 취소되지 않도록
+            throw new BadRequestException("orderIds, memberId, 주문일 범위 중 하나는 있어야 합니다.");
+        }
+        return new CancelOrdersResponse(canceled.size(), canceled);
+    }
+
+    @Data
+    static class CancelOrdersRequest {
+        private List<Long> orderIds;
+        private Long memberId;
+        private OrderStatus orderStatus;
+        private LocalDate orderDateFrom;
+        private LocalDate orderDateTo;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class CancelOrdersResponse {
+        private int count;
+        private List<Long> orderIds;
+    }
+
+}
@@ -3,17 +3,27 @@ package jpabook.jpashop.api;
 import jpabook.jpashop.domain.Address;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.OrderSummary;
+import jpabook.jpashop.exception.BadRequestException;
+import jpabook.jpashop.repository.BatchLoadContext;
 import jpabook.jpashop.repository.OrderRepository;
 import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.repository.OrderSummaryRepository;
 import jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryDto;
 import jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryRepository;
+import jpabook.jpashop.service.DbTaskExecutor;
+import jpabook.jpashop.service.query.OrderQueryService;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -28,6 +38,9 @@ import java.util.stream.Collectors;
 public class OrderSimpleApiController {
     private final OrderRepository orderRepository;
     private final OrderSimpleQueryRepository orderSimpleQueryRepository;
+    private final OrderQueryService orderQueryService;
+    private final OrderSummaryRepository orderSummaryRepository;
+    private final DbTaskExecutor dbTaskExecutor;
 
     /**
      * 엔티티를 조회해서 그대로 반환 V1
@@ -59,6 +72,19 @@ public class OrderSimpleApiController {
         return result;
     }
 
+    /**
+     * 엔티티 조회 후 DTO로 변환 V2.1
+     * 회원, 배송을 각각 IN 쿼리 한 번으로 초기화 -> 1 + 1 + 1
+     * @return
+     */
+    @GetMapping("/api/v2.1/simple-orders")
+    public List<SimpleOrderDto> ordersV2_batch(){
+        List<Order> orders = orderQueryService.findOrdersBatch(new OrderSearch(), SimpleOrderDto::registerKeys);
+        return orders.stream()
+                .map(o -> new SimpleOrderDto(o))
+                .collect(Collectors.toList());
+    }
+
     /**
      * 패치 조인으로 쿼리 수 최적화 V3
      * @return
@@ -81,6 +107,39 @@ public class OrderSimpleApiController {
         return orderSimpleQueryRepository.findOrderDtos();
     }
 
+    /**
+     * 주문 요약 테이블에서 조회 V5 - join 없이 order_summary 한 테이블만 (orderDate, order_id) 인덱스 순서로 읽는다
+     */
+    @GetMapping("/api/v5/simple-orders")
+    public List<OrderSummaryDto> ordersV5(
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "100") int size)
+    {
+        if (page < 0 || size < 1 || size > 1000) {
+            throw new BadRequestException("page 는 0 이상, size 는 1 ~ 1000 사이여야 합니다.");
+        }
+        PageRequest pageRequest = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "orderDate", "orderId"));
+        return orderSummaryRepository.findAllBy(pageRequest).stream()
+                .map(OrderSummaryDto::new)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 비동기 조회 - 조회는 db 스레드 풀에서 실행, 큐가 가득 차면 429
+     */
+    @GetMapping("/api/v4/simple-orders/async")
+    public CompletableFuture<List<OrderSimpleQueryDto>> ordersV4Async() {
+        return dbTaskExecutor.supply("GET /api/v4/simple-orders/async", orderSimpleQueryRepository::findOrderDtos);
+    }
+
+    @GetMapping("/api/v5/simple-orders/async")
+    public CompletableFuture<List<OrderSummaryDto>> ordersV5Async(
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "100") int size)
+    {
+        return dbTaskExecutor.supply("GET /api/v5/simple-orders/async", () -> ordersV5(page, size));
+    }
+
     @Data
     static class SimpleOrderDto {
         private Long orderId;
@@ -88,6 +147,7 @@ public class OrderSimpleApiController {
         private LocalDateTime orderDate;
         private OrderStatus orderStatus;
         private Address address;
+        private int totalPrice;
 
         public SimpleOrderDto(Order order) {
             orderId = order.getId();
@@ -95,6 +155,34 @@ public class OrderSimpleApiController {
             orderDate = order.getOrderDate();
             orderStatus = order.getStatus();
             address = order.getDelivery().getAddress();//LAZY 초기화(영속성 컨텍스트를 찾아 가져오고 없으면 db쿼리 호출)
+            totalPrice = order.getTotalPrice(); //orders 컬럼이라 orderItems 초기화 없음
+        }
+
+        //생성자에서 접근하는 지연로딩 연관관계 등록
+        static void registerKeys(Order order, BatchLoadContext context) {
+            context.register(order.getMember());
+            context.register(order.getDelivery());
+        }
+    }
+
+    @Data
+    static class OrderSummaryDto {
+        private Long orderId;
+        private String name;
+        private LocalDateTime orderDate;
+        private OrderStatus orderStatus;
+        private Address address;
+        private int totalPrice;
+        private int itemCount;
+
+        public OrderSummaryDto(OrderSummary summary) {
+            orderId = summary.getOrderId();
+            name = summary.getMemberName();
+            orderDate = summary.getOrderDate();
+            orderStatus = summary.getStatus();
+            address = summary.getAddress();
+            totalPrice = summary.getTotalPrice();
+            itemCount = summary.getItemCount();
         }
     }
 
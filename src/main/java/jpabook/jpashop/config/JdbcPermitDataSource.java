@@ -0,0 +1,93 @@
+package jpabook.jpashop.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 커넥션을 동시에 빌릴 수 있는 스레드 수를 permits 로 제한한다 (가상 스레드 pinning 대비)
+ *
+ * JDBC 드라이버(H2 등)는 synchronized 안에서 소켓 I/O 를 하는데, JDK 21 가상 스레드는 synchronized 안에서 block 되면
+ * carrier(플랫폼) 스레드를 붙잡고 놓지 않는다. 커넥션을 쥔 가상 스레드가 carrier 수만큼 되면 다른 가상 스레드(http 요청)가 멈춘다
+ * 커넥션을 받기 전에 Semaphore 에서 기다리게 하면 (j.u.c 대기는 carrier 를 놓아준다) 드라이버 안에 있는 스레드가 permits 를 넘지 않는다
+ *
+ * permit 은 Connection.close() 때 반납한다
+ * permit 을 쥔 스레드가 다른 커넥션을 기다리며 영원히 멈추지 않도록 hikari 처럼 timeoutMs 안에 못 받으면 SQLTransientConnectionException
+ */
+public class JdbcPermitDataSource extends DelegatingDataSource {
+
+    private final Semaphore permits;
+    private final long timeoutMs;
+
+    public JdbcPermitDataSource(DataSource targetDataSource, int permits, long timeoutMs) {
+        super(targetDataSource);
+        this.permits = new Semaphore(permits, true);
+        this.timeoutMs = timeoutMs;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        try {
+            return withRelease(super.getConnection());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        try {
+            return withRelease(super.getConnection(username, password));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    private void acquire() throws SQLException {
+        try {
+            if (!permits.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException("JDBC permit 을 " + timeoutMs + "ms 안에 받지 못했습니다. permits 가 모두 사용 중입니다.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("커넥션 대기 중 인터럽트", e);
+        }
+    }
+
+    //close 를 여러 번 불러도 permit 은 한 번만 반납
+    private Connection withRelease(Connection connection) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName()) && released.compareAndSet(false, true)) {
+                        try {
+                            connection.close();
+                        } finally {
+                            permits.release();
+                        }
+                        return null;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+}
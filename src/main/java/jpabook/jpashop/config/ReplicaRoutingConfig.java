@@ -0,0 +1,68 @@
+package jpabook.jpashop.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 읽기/쓰기 datasource 분리 (jpashop.datasource.routing.enabled = true 일 때만)
+ *
+ * primary 는 spring.datasource(.hikari) 설정으로, replica 는 jpashop.datasource.routing.replicas 로 만든다
+ * DataSource 빈을 직접 등록하므로 boot 의 DataSourceAutoConfiguration 은 빠진다
+ * primary/replica 풀은 빈으로 등록하지 않는다 (DataSource 빈이 여러 개면 p6spy 등이 각각 감싸고 주입도 모호해진다)
+ */
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(ReplicaRoutingProperties.class)
+@ConditionalOnProperty(name = "jpashop.datasource.routing.enabled", havingValue = "true")
+public class ReplicaRoutingConfig {
+
+    /**
+     * 트랜잭션이 시작될 때가 아니라 첫 sql 실행 때 커넥션을 가져오도록 LazyConnectionDataSourceProxy 로 감싼다 (그때는 readOnly 여부가 정해져 있다)
+     */
+    @Bean
+    public DataSource dataSource(DataSourceProperties dataSourceProperties, ReplicaRoutingProperties properties, Environment environment) {
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setPoolName("primary");
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < properties.getReplicas().size(); i++) {
+            ReplicaRoutingProperties.Replica replica = properties.getReplicas().get(i);
+            String name = replica.getName() == null ? "replica-" + (i + 1) : replica.getName();
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName(name);
+            dataSource.setJdbcUrl(replica.getUrl());
+            dataSource.setUsername(replica.getUsername());
+            dataSource.setPassword(replica.getPassword());
+            dataSource.setMaximumPoolSize(replica.getMaximumPoolSize());
+            dataSource.setReadOnly(true);
+            replicas.put(name, dataSource);
+        }
+        log.info("읽기/쓰기 datasource 분리. replicas={}, strategy={}, readYourWritesMs={}",
+                replicas.keySet(), properties.getStrategy(), properties.getReadYourWritesMs());
+
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replicas, properties.getStrategy(),
+                properties.getLagQuery(), properties.getMaxLagMs(), properties.getReadYourWritesMs());
+        routing.startLagCheck(properties.getLagCheckIntervalMs());
+
+        return new LazyConnectionDataSourceProxy(routing) {
+            //빈 종료 시 지연 확인 스레드와 커넥션 풀 정리 (destroy method 추론)
+            public void close() {
+                routing.close();
+            }
+        };
+    }
+}
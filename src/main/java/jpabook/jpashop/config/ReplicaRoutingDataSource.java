@@ -0,0 +1,272 @@
+package jpabook.jpashop.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 읽기 전용 트랜잭션(@Transactional(readOnly = true))은 replica 로, 나머지는 primary 로 보낸다
+ *
+ * 트랜잭션 시작 시점에는 readOnly 여부가 아직 설정되지 않으므로 LazyConnectionDataSourceProxy 로 감싸서
+ * 첫 sql 을 실행할 때 커넥션을 고르도록 해야 한다 (ReplicaRoutingConfig)
+ *
+ * - replica 선택 : ROUND_ROBIN 또는 LEAST_LOADED(hikari 활성 커넥션 수가 가장 적은 곳)
+ * - 지연 감지 : lagQuery(지연 ms 를 숫자 하나로 반환)를 주기적으로 실행해서 maxLagMs 를 넘거나 실패한 replica 는 제외, 남은 replica 가 없으면 primary
+ * - read-your-writes : 쓰기 트랜잭션이 커밋되면 readYourWritesMs 동안 같은 요청/같은 클라이언트(쿠키)의 조회도 primary 로
+ *   웹 요청 안에서는 요청 속성과 쿠키에만 남겨 요청이 끝나면 같이 사라지고, 요청 밖(배치 등)에서만 스레드(ThreadLocal)에 남긴다
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+    static final String STICKY_COOKIE = "jpashop-primary-until";
+    static final String STICKY_ATTRIBUTE = ReplicaRoutingDataSource.class.getName() + ".primaryUntil";
+
+    public enum Strategy {ROUND_ROBIN, LEAST_LOADED}
+
+    private final Map<String, DataSource> replicas;
+    private final Strategy strategy;
+    private final String lagQuery;
+    private final long maxLagMs;
+    private final long readYourWritesMs;
+
+    private final ThreadLocal<Long> primaryUntil = new ThreadLocal<>();     //웹 요청 밖에서만 사용
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile List<String> healthyReplicas;
+    private final Map<String, Long> lags = new HashMap<>();
+    private ScheduledExecutorService lagChecker;
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, Strategy strategy,
+                                    String lagQuery, long maxLagMs, long readYourWritesMs) {
+        this.replicas = new LinkedHashMap<>(replicas);
+        this.strategy = strategy;
+        this.lagQuery = lagQuery;
+        this.maxLagMs = maxLagMs;
+        this.readYourWritesMs = readYourWritesMs;
+        this.healthyReplicas = new ArrayList<>(replicas.keySet());
+
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            stickToPrimaryAfterCommit();
+            return PRIMARY;
+        }
+        if (isStickyToPrimary()) {
+            return PRIMARY;
+        }
+        List<String> candidates = healthyReplicas;
+        if (candidates.isEmpty()) {
+            return PRIMARY;
+        }
+        return strategy == Strategy.LEAST_LOADED ? leastLoaded(candidates) : roundRobin(candidates);
+    }
+
+    /**
+     * 지연 시간을 확인해서 조회 대상 replica 목록을 갱신한다
+     */
+    public void checkLag() {
+        List<String> healthy = new ArrayList<>();
+        replicas.forEach((name, dataSource) -> {
+            long lag = lagOf(name, dataSource);
+            synchronized (lags) {
+                lags.put(name, lag);
+            }
+            if (lag >= 0 && lag <= maxLagMs) {
+                healthy.add(name);
+            }
+        });
+        if (!healthy.equals(healthyReplicas)) {
+            log.warn("조회 대상 replica 변경. healthy={}, lags={}", healthy, getLags());
+        }
+        healthyReplicas = Collections.unmodifiableList(healthy);
+    }
+
+    public void startLagCheck(long intervalMs) {
+        if (lagQuery == null || lagQuery.isEmpty()) {
+            return;
+        }
+        checkLag();
+        lagChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "replica-lag-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        lagChecker.scheduleWithFixedDelay(this::checkLag, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 지연 확인 중지, primary/replica 커넥션 풀 종료
+     */
+    public void close() {
+        if (lagChecker != null) {
+            lagChecker.shutdown();
+        }
+        getResolvedDataSources().values().forEach(dataSource -> {
+            if (dataSource instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) dataSource).close();
+                } catch (Exception e) {
+                    log.warn("datasource 종료 실패", e);
+                }
+            }
+        });
+    }
+
+    public List<String> getHealthyReplicas() {
+        return healthyReplicas;
+    }
+
+    public Map<String, Long> getLags() {
+        synchronized (lags) {
+            return new HashMap<>(lags);
+        }
+    }
+
+    //실패하면 -1
+    private long lagOf(String name, DataSource dataSource) {
+        if (lagQuery == null || lagQuery.isEmpty()) {
+            return 0;
+        }
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(lagQuery)) {
+            return rs.next() ? rs.getLong(1) : -1;
+        } catch (Exception e) {
+            log.warn("replica 지연 확인 실패. replica={}", name, e);
+            return -1;
+        }
+    }
+
+    private String roundRobin(List<String> candidates) {
+        return candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size()));
+    }
+
+    private String leastLoaded(List<String> candidates) {
+        String selected = candidates.get(0);
+        int min = Integer.MAX_VALUE;
+        for (String name : candidates) {
+            int active = activeConnections(replicas.get(name));
+            if (active < min) {
+                min = active;
+                selected = name;
+            }
+        }
+        return selected;
+    }
+
+    private static int activeConnections(DataSource dataSource) {
+        if (dataSource instanceof HikariDataSource) {
+            HikariPoolMXBean pool = ((HikariDataSource) dataSource).getHikariPoolMXBean();
+            return pool == null ? 0 : pool.getActiveConnections();  //풀이 아직 안 만들어졌으면 0
+        }
+        return 0;
+    }
+
+    //== read-your-writes ==//
+
+    private void stickToPrimaryAfterCommit() {
+        if (readYourWritesMs <= 0 || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                long until = System.currentTimeMillis() + readYourWritesMs;
+                RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+                if (attributes == null) {
+                    primaryUntil.set(until);
+                    return;
+                }
+                //요청 스레드는 풀에서 재사용되므로 ThreadLocal 이 아닌 요청 속성에 둔다
+                attributes.setAttribute(STICKY_ATTRIBUTE, until, RequestAttributes.SCOPE_REQUEST);
+                HttpServletResponse response = currentResponse();
+                if (response != null && !response.isCommitted()) {
+                    Cookie cookie = new Cookie(STICKY_COOKIE, String.valueOf(until));
+                    cookie.setPath("/");
+                    cookie.setHttpOnly(true);
+                    cookie.setMaxAge((int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(readYourWritesMs)));
+                    response.addCookie(cookie);
+                }
+            }
+        });
+    }
+
+    private boolean isStickyToPrimary() {
+        if (readYourWritesMs <= 0) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            Long until = primaryUntil.get();
+            if (until == null) {
+                return false;
+            }
+            if (until > now) {
+                return true;
+            }
+            primaryUntil.remove();
+            return false;
+        }
+        Long until = (Long) attributes.getAttribute(STICKY_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (until != null && until > now) {
+            return true;
+        }
+        HttpServletRequest request = currentRequest();
+        if (request != null && request.getCookies() != null) {
+            for (Cookie cookie : request.getCookies()) {
+                if (STICKY_COOKIE.equals(cookie.getName())) {
+                    //클라이언트가 만든 값이므로 now + readYourWritesMs 보다 먼 값은 무시한다
+                    try {
+                        long cookieUntil = Long.parseLong(cookie.getValue());
+                        return cookieUntil > now && cookieUntil <= now + readYourWritesMs;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static HttpServletRequest currentRequest() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes instanceof ServletRequestAttributes ? ((ServletRequestAttributes) attributes).getRequest() : null;
+    }
+
+    private static HttpServletResponse currentResponse() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes instanceof ServletRequestAttributes ? ((ServletRequestAttributes) attributes).getResponse() : null;
+    }
+}
@@ -0,0 +1,35 @@
+package jpabook.jpashop.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * jpashop.datasource.routing.* (application.yml 참고)
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "jpashop.datasource.routing")
+public class ReplicaRoutingProperties {
+
+    private boolean enabled;
+    private ReplicaRoutingDataSource.Strategy strategy = ReplicaRoutingDataSource.Strategy.ROUND_ROBIN;
+    private String lagQuery;                //지연 ms 를 반환하는 쿼리, 없으면 지연 확인 안 함
+    private long maxLagMs = 1000;
+    private long lagCheckIntervalMs = 1000;
+    private long readYourWritesMs = 0;      //0 이면 끔
+    private List<Replica> replicas = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class Replica {
+        private String name;
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+    }
+}
@@ -0,0 +1,81 @@
+package jpabook.jpashop.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.scheduling.annotation.EnableAsync;
+
+import javax.sql.DataSource;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 가상 스레드 실행 모드 (jpashop.virtual-threads.enabled = true, JDK 21 이상에서 실행할 때만)
+ *
+ * - tomcat 요청 처리 : 요청마다 가상 스레드 (server.tomcat.threads.max 제한이 없어진다)
+ * - @Async / applicationTaskExecutor : 작업마다 가상 스레드
+ * - JDBC : JdbcPermitDataSource 로 커넥션을 동시에 쥘 수 있는 스레드 수 제한
+ *
+ * 동시 처리량의 상한은 스레드 수가 아니라 커넥션 풀 크기가 된다
+ * pinning 확인 : -Djdk.tracePinnedThreads=short
+ */
+@Slf4j
+@Configuration
+public class VirtualThreadConfig {
+
+    //모드가 꺼져 있으면 @Async 프록시도 만들지 않는다
+    @EnableAsync
+    @Configuration
+    @Conditional(VirtualThreadsCondition.class)
+    static class AsyncConfig {
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @Conditional(VirtualThreadsCondition.class)
+    public ExecutorService virtualThreadExecutor() {
+        log.info("가상 스레드 실행 모드");
+        return VirtualThreads.newExecutor("vt-").orElseThrow(IllegalStateException::new);
+    }
+
+    @Bean
+    @Conditional(VirtualThreadsCondition.class)
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer(ExecutorService virtualThreadExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+
+    //boot 의 applicationTaskExecutor(ThreadPoolTaskExecutor) 대신 사용된다
+    @Bean(name = {"applicationTaskExecutor", "taskExecutor"})
+    @Conditional(VirtualThreadsCondition.class)
+    public AsyncTaskExecutor virtualThreadTaskExecutor(ExecutorService virtualThreadExecutor) {
+        return new TaskExecutorAdapter(virtualThreadExecutor);
+    }
+
+    /**
+     * jdbc-permits 기본값은 carrier 수 - 1 (커넥션 풀 크기 이하), 드라이버 안에서 pin 되어도 carrier 하나는 남도록
+     * permit 대기 시간은 hikari connection-timeout 과 같다
+     */
+    @Bean
+    @Conditional(VirtualThreadsCondition.class)
+    public static BeanPostProcessor jdbcPermitDataSourcePostProcessor(
+            @Value("${jpashop.virtual-threads.jdbc-permits:0}") int jdbcPermits,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int maximumPoolSize,
+            @Value("${spring.datasource.hikari.connection-timeout:30000}") long connectionTimeoutMs) {
+        int permits = jdbcPermits > 0 ? jdbcPermits
+                : Math.max(1, Math.min(maximumPoolSize, Runtime.getRuntime().availableProcessors() - 1));
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && !(bean instanceof JdbcPermitDataSource)) {
+                    log.info("JDBC 동시 사용 제한. dataSource={}, permits={}, timeoutMs={}", beanName, permits, connectionTimeoutMs);
+                    return new JdbcPermitDataSource((DataSource) bean, permits, connectionTimeoutMs);
+                }
+                return bean;
+            }
+        };
+    }
+}
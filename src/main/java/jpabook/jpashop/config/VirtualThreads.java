@@ -0,0 +1,55 @@
+package jpabook.jpashop.config;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 가상 스레드(JDK 21+) 생성
+ *
+ * 빌드는 Java 8 / Spring Boot 2.3 이라 Thread.ofVirtual() 를 직접 호출할 수 없어서 리플렉션으로 찾는다
+ * JDK 21 미만(19, 20 은 preview)에서 실행하면 지원하지 않는 것으로 본다
+ */
+@Slf4j
+public final class VirtualThreads {
+
+    private static final boolean SUPPORTED = threadFactory("probe-").isPresent();
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    /**
+     * 작업마다 새 가상 스레드를 만드는 executor (스레드 이름 = prefix + 번호)
+     */
+    public static Optional<ExecutorService> newExecutor(String prefix) {
+        return threadFactory(prefix).flatMap(factory -> {
+            try {
+                return Optional.of((ExecutorService) Executors.class
+                        .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                        .invoke(null, factory));
+            } catch (ReflectiveOperationException e) {
+                return Optional.empty();
+            }
+        });
+    }
+
+    //Thread.ofVirtual().name(prefix, 0).factory()
+    private static Optional<ThreadFactory> threadFactory(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return Optional.of((ThreadFactory) builderType.getMethod("factory").invoke(builder));
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            log.debug("가상 스레드를 지원하지 않는 JDK 입니다. java.version={}", System.getProperty("java.version"));
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package jpabook.jpashop.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * jpashop.virtual-threads.enabled = true 이고 실행 중인 JDK 가 가상 스레드를 지원할 때만
+ * 켜져 있어도 지원하지 않으면 경고만 남기고 기존 스레드 풀로 동작한다
+ */
+@Slf4j
+class VirtualThreadsCondition implements Condition {
+
+    private static final AtomicBoolean warned = new AtomicBoolean();   //조건이 빈마다 평가되므로 경고는 한 번만
+
+    @Override
+    public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+        boolean enabled = context.getEnvironment().getProperty("jpashop.virtual-threads.enabled", Boolean.class, false);
+        if (enabled && !VirtualThreads.isSupported()) {
+            if (warned.compareAndSet(false, true)) {
+                log.warn("jpashop.virtual-threads.enabled=true 지만 JDK 21 이상이 아니라 플랫폼 스레드로 실행합니다. java.version={}",
+                        System.getProperty("java.version"));
+            }
+            return false;
+        }
+        return enabled;
+    }
+}
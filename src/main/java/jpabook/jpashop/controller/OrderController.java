@@ -1,14 +1,16 @@
 package jpabook.jpashop.controller;
 
 import jpabook.jpashop.domain.Member;
-import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.repository.OrderListDto;
 import jpabook.jpashop.repository.OrderRepository;
 import jpabook.jpashop.repository.OrderSearch;
 import jpabook.jpashop.service.ItemService;
 import jpabook.jpashop.service.MemberService;
 import jpabook.jpashop.service.OrderService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -18,6 +20,8 @@ import java.util.List;
 @Controller
 @RequiredArgsConstructor
 public class OrderController {
+    private static final int PAGE_SIZE = 20;
+
     private final OrderService orderService;
     private final MemberService memberService;
     private final ItemService itemService;
@@ -45,8 +49,9 @@ public class OrderController {
     private final OrderRepository orderRepository;
     @GetMapping("/orders")
     public String orderList(@ModelAttribute("orderSearch")OrderSearch orderSearch,
+                            @RequestParam(value = "page", defaultValue = "0") int page,
                             Model model){
-        List<Order> orders = orderService.findOrders(orderSearch);
+        Page<OrderListDto> orders = orderService.findOrderList(orderSearch, PageRequest.of(Math.max(page, 0), PAGE_SIZE));
         model.addAttribute("orders", orders);
         return "order/orderList";
 
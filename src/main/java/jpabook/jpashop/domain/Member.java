@@ -1,31 +1,57 @@
 package jpabook.jpashop.domain;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.OptimisticLock;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotEmpty;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_member_name", columnList = "name"),
+        @Index(name = "idx_member_search_name", columnList = "searchName")    //대소문자 무시 검색
+})
 @Getter @Setter
 public class Member {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "member_seq")
+    @GenericGenerator(name = "member_seq", strategy = PooledSequenceGenerator.NAME,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "member_seq"))
     @Column(name = "member_id")
     private Long id;
 
+    @Version
+    private Long version;   //낙관적 락
+
     @NotEmpty
     private String name;
 
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    private String searchName;  //소문자로 바꾼 이름, setName 에서 같이 바뀐다
+
     @Embedded
     private Address address;
 
 //    @JsonIgnore
+    @OptimisticLock(excluded = true)  //주문이 추가될 때마다 회원 version 이 올라가지 않도록
     @OneToMany(mappedBy = "member")
     private List<Order> orders = new ArrayList<>();
 
+    public void setName(String name) {
+        this.name = name;
+        this.searchName = name == null ? null : name.toLowerCase(Locale.ROOT);
+    }
+
 }
 
@@ -0,0 +1,14 @@
+package jpabook.jpashop.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 회원 이름 변경 (변경한 트랜잭션 안에서 발행)
+ */
+@Getter
+@AllArgsConstructor
+public class MemberRenamedEvent {
+    private final Long memberId;
+    private final String name;
+}
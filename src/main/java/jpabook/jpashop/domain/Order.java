@@ -7,6 +7,10 @@ import lombok.Setter;
 import org.aspectj.weaver.ast.Or;
 import org.hibernate.proxy.pojo.bytebuddy.ByteBuddyInterceptor;
 
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
 import javax.persistence.*;
 import java.time.LocalDateTime;
 
@@ -14,16 +18,25 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_order_date_id", columnList = "orderDate, order_id"),  //keyset 페이징
+        @Index(name = "idx_orders_status_order_date", columnList = "status, orderDate"),    //상태 검색
+        @Index(name = "idx_orders_member_id", columnList = "member_id")     //회원 join, 회원별 집계
+})
 @Getter
 @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 public class Order {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "orders_seq")
+    @GenericGenerator(name = "orders_seq", strategy = PooledSequenceGenerator.NAME,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "orders_seq"))
     @Column(name = "order_id")
     private Long id;
 
+    @Version
+    private Long version;   //낙관적 락
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "member_id")
     private Member member; //주문 회원
@@ -41,6 +54,9 @@ public class Order {
     @Enumerated(EnumType.STRING)
     private OrderStatus status; //주문상태 [ORDER, CANCEL]
 
+    @Setter(AccessLevel.NONE)
+    private int totalPrice; //전체 주문 가격, 주문상품 추가 시 누적 (목록/집계에서 order_item 을 읽지 않도록)
+
     //== 연관관계 메서드 ==//
     public void setMember(Member member) {
         this.member = member;
@@ -50,6 +66,7 @@ public class Order {
     public void addOrderItem(OrderItem orderItem) {
         this.orderItems.add(orderItem);
         orderItem.setOrder(this);
+        this.totalPrice += orderItem.getTotalPrice();
     }
 
     public void setDelivery(Delivery delivery) {
@@ -75,28 +92,28 @@ public class Order {
      * 주문 취소
      */
     public void cancel() {
+        cancelWithoutRestock();
+        for (OrderItem orderItem : orderItems) {
+            orderItem.cancel();
+        }
+    }
+
+    /**
+     * 주문 취소 - 재고 복구는 호출한 쪽에서 (재고 예약 엔진 사용 시)
+     */
+    public void cancelWithoutRestock() {
         if (delivery.getStatus() == DeliveryStatus.COMP) {
             throw new IllegalStateException("이미 배송완료된 상품은 취소가 불가능합니다.");
         }
 
         this.setStatus(OrderStatus.CANCEL);
-        for (OrderItem orderItem : orderItems) {
-            orderItem.cancel();
-        }
     }
 
     //==조회 로직==//
     /**
-     * 전체 주문 가격 조회
+     * 전체 주문 가격 조회 - 취소해도 주문 당시 금액은 그대로 두고, 집계에서 상태로 거른다
      */
     public int getTotalPrice() {
-        int totalPrice = 0;
-        for (OrderItem orderItem : orderItems) {
-            totalPrice += orderItem.getTotalPrice();
-        }
-//        int totalPrice = orderItems.stream()
-//                .mapToInt(OrderItem::getTotalPrice)
-//                .sum();
         return totalPrice;
     }
 }
@@ -0,0 +1,15 @@
+package jpabook.jpashop.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 주문 취소 (취소한 트랜잭션 안에서 발행)
+ */
+@Getter
+@AllArgsConstructor
+public class OrderCanceledEvent {
+    private final List<Long> orderIds;
+}
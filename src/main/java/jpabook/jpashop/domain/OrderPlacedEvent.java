@@ -0,0 +1,13 @@
+package jpabook.jpashop.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 주문 생성 (주문을 저장한 트랜잭션 안에서 발행)
+ */
+@Getter
+@AllArgsConstructor
+public class OrderPlacedEvent {
+    private final Order order;
+}
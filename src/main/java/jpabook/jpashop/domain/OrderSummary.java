@@ -0,0 +1,76 @@
+package jpabook.jpashop.domain;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 주문 목록 조회용 요약 테이블 (주문 + 회원 이름 + 배송 주소 + 합계)
+ * 주문/취소 이벤트로 OrderSummaryProjector 가 같은 트랜잭션 안에서 갱신한다, 목록 조회는 join 없이 이 테이블만 읽는다
+ */
+@Entity
+@Table(name = "order_summary", indexes = {
+        @Index(name = "idx_order_summary_order_date_id", columnList = "orderDate, order_id"),
+        @Index(name = "idx_order_summary_member_id", columnList = "memberId")
+})
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class OrderSummary implements Persistable<Long> {
+
+    @Id
+    @Column(name = "order_id")
+    private Long orderId;
+
+    private Long memberId;  //회원 이름이 바뀌면 이 회원의 요약을 찾아서 갱신
+
+    private String memberName;
+
+    private LocalDateTime orderDate;
+
+    @Enumerated(EnumType.STRING)
+    private OrderStatus status;
+
+    @Embedded
+    private Address address; //배송 주소
+
+    private int totalPrice;
+
+    private int itemCount; //주문 상품 종류 수
+
+    @Transient
+    private boolean newEntity = true;   //id 를 직접 넣으므로 save 시 merge(select) 대신 persist 하도록
+
+    //==생성 메서드==//
+    public static OrderSummary of(Order order) {
+        OrderSummary summary = new OrderSummary();
+        summary.orderId = order.getId();
+        summary.memberId = order.getMember().getId();
+        summary.memberName = order.getMember().getName();
+        summary.orderDate = order.getOrderDate();
+        summary.status = order.getStatus();
+        summary.address = order.getDelivery().getAddress();
+        summary.totalPrice = order.getTotalPrice();
+        summary.itemCount = order.getOrderItems().size();
+        return summary;
+    }
+
+    @Override
+    public Long getId() {
+        return orderId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newEntity;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.newEntity = false;
+    }
+}
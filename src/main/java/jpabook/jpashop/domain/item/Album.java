@@ -2,11 +2,14 @@ package jpabook.jpashop.domain.item;
 
 import lombok.Getter;
   import lombok.Setter;
+  import org.hibernate.annotations.DynamicUpdate;
+
   import javax.persistence.DiscriminatorValue;
   import javax.persistence.Entity;
   @Entity
   @DiscriminatorValue("A")
   @Getter @Setter
+  @DynamicUpdate
   
    public class Album extends Item {
       private String artist;
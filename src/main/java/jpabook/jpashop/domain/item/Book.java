@@ -2,11 +2,14 @@ package jpabook.jpashop.domain.item;
 
 import lombok.Getter;
   import lombok.Setter;
+  import org.hibernate.annotations.DynamicUpdate;
+
   import javax.persistence.DiscriminatorValue;
   import javax.persistence.Entity;
   @Entity
   @DiscriminatorValue("B")
   @Getter @Setter
+  @DynamicUpdate
   public class Book extends Item {
       private String author;
       private String isbn;
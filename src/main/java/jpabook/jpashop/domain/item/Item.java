@@ -2,9 +2,16 @@ package jpabook.jpashop.domain.item;
 
 import jpabook.jpashop.domain.Category;
 import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.PooledSequenceGenerator;
 import jpabook.jpashop.exception.NotEnoughStockException;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 //import jpabook.jpashop.domain.Category;
 
 import javax.persistence.*;
@@ -14,14 +21,21 @@ import java.util.List;
 @Entity
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 @DiscriminatorColumn(name = "dtype")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "item")  //2차 캐시, Book/Album/Movie 도 같은 region 에 저장
+@DynamicUpdate  //재고만 바뀌면 stock_quantity 만 update, 캐시 엔트리는 커밋 후 새 값으로 교체된다
 @Getter
 @Setter
 public abstract class Item {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "item_seq")
+    @GenericGenerator(name = "item_seq", strategy = PooledSequenceGenerator.NAME,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "item_seq"))
     @Column(name = "item_id")
     private Long id;
 
+    @Version
+    private Long version;   //낙관적 락
+
 //    @OneToMany(mappedBy = "id")
 //    private List<OrderItem> orderItems; //다대일 단방향임으로 없어도됨
 
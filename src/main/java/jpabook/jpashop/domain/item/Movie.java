@@ -2,11 +2,14 @@ package jpabook.jpashop.domain.item;
 
 import lombok.Getter;
   import lombok.Setter;
+  import org.hibernate.annotations.DynamicUpdate;
+
   import javax.persistence.DiscriminatorValue;
   import javax.persistence.Entity;
   @Entity
   @DiscriminatorValue("M")
   @Getter @Setter
+  @DynamicUpdate
   public class Movie extends Item {
       private String director;
       private String actor;
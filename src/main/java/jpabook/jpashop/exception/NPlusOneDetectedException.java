@@ -0,0 +1,19 @@
+package jpabook.jpashop.exception;
+
+public class NPlusOneDetectedException extends RuntimeException {
+    public NPlusOneDetectedException() {
+        super();
+    }
+
+    public NPlusOneDetectedException(String message) {
+        super(message);
+    }
+
+    public NPlusOneDetectedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public NPlusOneDetectedException(Throwable cause) {
+        super(cause);
+    }
+}
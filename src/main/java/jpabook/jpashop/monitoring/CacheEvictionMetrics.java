@@ -0,0 +1,53 @@
+package jpabook.jpashop.monitoring;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+
+/**
+ * 2차 캐시 region 의 eviction 수
+ *
+ * hit/miss/put 은 hibernate 통계로 actuator 가 hibernate.second.level.cache.* 로 노출하지만
+ * 크기/만료로 제거된 건수는 캐시 구현체만 알고 있어서 JCache 표준 MXBean(CacheStatistics)에서 읽는다
+ * (application.conf 에서 region 마다 monitoring.statistics = true 필요)
+ */
+@Slf4j
+@Component
+public class CacheEvictionMetrics implements MeterBinder {
+
+    private static final String[] REGIONS = {"item", "default-query-results-region"};
+
+    private final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (String region : REGIONS) {
+            FunctionCounter.builder("jpashop.cache.evictions", this, m -> m.evictions(region))
+                    .tag("region", region)
+                    .description("2차 캐시에서 크기/만료로 제거된 엔트리 수")
+                    .register(registry);
+        }
+    }
+
+    double evictions(String region) {
+        try {
+            Set<ObjectName> names = mBeanServer.queryNames(
+                    new ObjectName("javax.cache:type=CacheStatistics,Cache=" + region + ",*"), null);
+            long evictions = 0;
+            for (ObjectName name : names) {
+                evictions += ((Number) mBeanServer.getAttribute(name, "CacheEvictions")).longValue();
+            }
+            return evictions;
+        } catch (Exception e) {
+            log.debug("cache statistics 조회 실패. region={}", region, e);
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package jpabook.jpashop.monitoring;
+
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.item.Item;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.CollectionStatistics;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * /actuator/hibernate - hibernate 통계 (generate_statistics = true 필요)
+ *
+ * - summary : 세션/트랜잭션/sql 수, 가장 느린 jpql, 2차/쿼리/plan 캐시 hit 비율
+ * - entities, collections : 주문 도메인 엔티티(Order, OrderItem, Item, Member, Delivery) 별 load/fetch/insert/update/delete
+ * - caches : 2차 캐시 region 별 hit/miss/put
+ * - queries : 총 실행 시간이 긴 jpql 상위 TOP_QUERIES 개
+ * - slowQueries : SlowQueryRecorder 가 기록한 느린 sql
+ *
+ * 웹에 노출되므로 읽기 전용이다 - 통계 초기화(쓰기) 오퍼레이션은 두지 않는다 (운영 중 누구나 통계를 지울 수 있게 된다)
+ */
+@Component
+@Endpoint(id = "hibernate")
+public class HibernateStatsEndpoint {
+
+    private static final int TOP_QUERIES = 20;
+    private static final List<Class<?>> ENTITIES = Arrays.asList(
+            Order.class, OrderItem.class, Item.class, Member.class, Delivery.class);
+
+    private final Statistics statistics;
+    private final SlowQueryRecorder slowQueryRecorder;
+
+    public HibernateStatsEndpoint(EntityManagerFactory emf, SlowQueryRecorder slowQueryRecorder) {
+        this.statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        this.slowQueryRecorder = slowQueryRecorder;
+    }
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", statistics.isStatisticsEnabled());
+        result.put("since", Instant.ofEpochMilli(statistics.getStartTime()).toString());
+        result.put("summary", summary());
+        result.put("entities", entities());
+        result.put("collections", collections());
+        result.put("caches", caches());
+        result.put("queries", queries());
+        result.put("slowQueries", slowQueryRecorder.getSlowQueries());
+        return result;
+    }
+
+    private Map<String, Object> summary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("sessions", statistics.getSessionOpenCount());
+        summary.put("transactions", statistics.getTransactionCount());
+        summary.put("statements", statistics.getPrepareStatementCount());
+        summary.put("flushes", statistics.getFlushCount());
+        summary.put("optimisticFailures", statistics.getOptimisticFailureCount());
+        summary.put("entityLoads", statistics.getEntityLoadCount());
+        summary.put("entityFetches", statistics.getEntityFetchCount());
+        summary.put("collectionLoads", statistics.getCollectionLoadCount());
+        summary.put("collectionFetches", statistics.getCollectionFetchCount());
+        summary.put("queryExecutions", statistics.getQueryExecutionCount());
+        summary.put("queryExecutionMaxTimeMs", statistics.getQueryExecutionMaxTime());
+        summary.put("queryExecutionMaxTimeQuery", statistics.getQueryExecutionMaxTimeQueryString());
+        summary.put("secondLevelCache", ratio(statistics.getSecondLevelCacheHitCount(),
+                statistics.getSecondLevelCacheMissCount(), statistics.getSecondLevelCachePutCount()));
+        summary.put("queryCache", ratio(statistics.getQueryCacheHitCount(),
+                statistics.getQueryCacheMissCount(), statistics.getQueryCachePutCount()));
+        summary.put("queryPlanCache", ratio(statistics.getQueryPlanCacheHitCount(),
+                statistics.getQueryPlanCacheMissCount(), 0));
+        return summary;
+    }
+
+    //하위 타입(Book, Album, Movie)도 각자 이름으로 나온다
+    private Map<String, Object> entities() {
+        Map<String, Object> entities = new TreeMap<>();
+        for (String entityName : statistics.getEntityNames()) {
+            if (!tracked(entityName)) {
+                continue;
+            }
+            EntityStatistics stats = statistics.getEntityStatistics(entityName);
+            Map<String, Object> entity = new LinkedHashMap<>();
+            entity.put("loads", stats.getLoadCount());
+            entity.put("fetches", stats.getFetchCount());
+            entity.put("inserts", stats.getInsertCount());
+            entity.put("updates", stats.getUpdateCount());
+            entity.put("deletes", stats.getDeleteCount());
+            entity.put("optimisticFailures", stats.getOptimisticFailureCount());
+            if (stats.getCacheRegionName() != null) {
+                Map<String, Object> cache = ratio(stats.getCacheHitCount(), stats.getCacheMissCount(), stats.getCachePutCount());
+                cache.put("region", stats.getCacheRegionName());
+                entity.put("cache", cache);
+            }
+            entities.put(simpleName(entityName), entity);
+        }
+        return entities;
+    }
+
+    private Map<String, Object> collections() {
+        Map<String, Object> collections = new TreeMap<>();
+        for (String role : statistics.getCollectionRoleNames()) {
+            String owner = role.substring(0, role.lastIndexOf('.'));
+            if (!tracked(owner)) {
+                continue;
+            }
+            CollectionStatistics stats = statistics.getCollectionStatistics(role);
+            Map<String, Object> collection = new LinkedHashMap<>();
+            collection.put("loads", stats.getLoadCount());
+            collection.put("fetches", stats.getFetchCount());
+            collection.put("recreates", stats.getRecreateCount());
+            collection.put("updates", stats.getUpdateCount());
+            collection.put("removes", stats.getRemoveCount());
+            collections.put(simpleName(owner) + role.substring(owner.length()), collection);
+        }
+        return collections;
+    }
+
+    private Map<String, Object> caches() {
+        Map<String, Object> caches = new TreeMap<>();
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics stats = statistics.getCacheRegionStatistics(region);
+            if (stats == null) {
+                continue;
+            }
+            Map<String, Object> cache = ratio(stats.getHitCount(), stats.getMissCount(), stats.getPutCount());
+            cache.put("elementsInMemory", stats.getElementCountInMemory());
+            caches.put(region, cache);
+        }
+        return caches;
+    }
+
+    private List<Map<String, Object>> queries() {
+        return Arrays.stream(statistics.getQueries())
+                .map(query -> {
+                    QueryStatistics stats = statistics.getQueryStatistics(query);
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("query", query);
+                    result.put("executions", stats.getExecutionCount());
+                    result.put("rows", stats.getExecutionRowCount());
+                    result.put("totalTimeMs", stats.getExecutionTotalTime());
+                    result.put("avgTimeMs", stats.getExecutionAvgTimeAsDouble());
+                    result.put("maxTimeMs", stats.getExecutionMaxTime());
+                    result.put("cacheHits", stats.getCacheHitCount());
+                    result.put("cacheMisses", stats.getCacheMissCount());
+                    return result;
+                })
+                .sorted(Comparator.comparing((Map<String, Object> q) -> (Long) q.get("totalTimeMs")).reversed())
+                .limit(TOP_QUERIES)
+                .collect(Collectors.toList());
+    }
+
+    private static Map<String, Object> ratio(long hits, long misses, long puts) {
+        Map<String, Object> ratio = new LinkedHashMap<>();
+        ratio.put("hits", hits);
+        ratio.put("misses", misses);
+        ratio.put("puts", puts);
+        ratio.put("hitRatio", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        return ratio;
+    }
+
+    private static boolean tracked(String entityName) {
+        try {
+            Class<?> type = Class.forName(entityName);
+            return ENTITIES.stream().anyMatch(entity -> entity.isAssignableFrom(type));
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static String simpleName(String entityName) {
+        return entityName.substring(entityName.lastIndexOf('.') + 1);
+    }
+}
@@ -0,0 +1,37 @@
+package jpabook.jpashop.monitoring;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * hibernate query plan cache(jpql 파싱 결과) hit/miss
+ *
+ * actuator 의 hibernate 메트릭에는 plan cache 가 없어서 hibernate 통계에서 직접 읽는다 (generate_statistics = true 필요)
+ * miss 가 계속 늘면 jpql 문자열이 매번 달라지는 것(값을 문자열로 이어붙이는 등) 이거나 plan_cache_max_size 가 작은 것
+ */
+@Component
+@RequiredArgsConstructor
+public class QueryPlanCacheMetrics implements MeterBinder {
+
+    private final EntityManagerFactory emf;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        FunctionCounter.builder("jpashop.hibernate.query.plan.cache", statistics, Statistics::getQueryPlanCacheHitCount)
+                .tag("result", "hit")
+                .description("hibernate query plan cache 조회 수")
+                .register(registry);
+        FunctionCounter.builder("jpashop.hibernate.query.plan.cache", statistics, Statistics::getQueryPlanCacheMissCount)
+                .tag("result", "miss")
+                .description("hibernate query plan cache 조회 수")
+                .register(registry);
+    }
+}
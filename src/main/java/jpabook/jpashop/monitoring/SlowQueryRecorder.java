@@ -0,0 +1,145 @@
+package jpabook.jpashop.monitoring;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 느린 sql 기록 - org.hibernate.SQL 로그를 켜지 않고도 운영에서 느린 쿼리와 호출 위치를 찾는다
+ *
+ * jpashop.slow-query.threshold-ms 이상 걸린 sql 을 최근 capacity 건까지 링 버퍼에 보관한다 (/actuator/hibernate 의 slowQueries)
+ * - sql : 바인딩 전 sql (? 그대로)
+ * - parameters : 바인드 파라미터 수와 IN 절 크기, 값은 남기지 않는다
+ * - callSite : 스택에서 처음 만나는 애플리케이션 코드 (repository/service 메서드)
+ * 느린 sql 이 나올 때만 스택을 뜨므로 평소 비용은 시간 비교 한 번이다
+ */
+@Slf4j
+@Component
+public class SlowQueryRecorder extends SimpleJdbcEventListener implements MeterBinder {
+
+    private static final String APP_PACKAGE = "jpabook.jpashop.";
+    private static final Pattern IN_LIST = Pattern.compile("in \\((\\?(?:, ?\\?)*)\\)", Pattern.CASE_INSENSITIVE);
+
+    private volatile long thresholdNanos;
+    private final AtomicReferenceArray<SlowQuery> buffer;
+    private final AtomicLong sequence = new AtomicLong();
+
+    //datasource 를 감쌀 때 만들어지는 빈이라 MeterRegistry 를 주입받지 않는다 (주입받으면 datasource 가 p6spy 로 감싸지기 전에 초기화된다)
+    public SlowQueryRecorder(@Value("${jpashop.slow-query.threshold-ms:200}") long thresholdMs,
+                             @Value("${jpashop.slow-query.capacity:100}") int capacity) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+        this.buffer = new AtomicReferenceArray<>(capacity);
+    }
+
+    //테스트에서 모든 sql 을 기록하도록 바꿀 때 사용 (설정을 바꾸면 애플리케이션 컨텍스트를 새로 띄우게 된다)
+    void setThresholdMs(long thresholdMs) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("jpashop.sql.slow", sequence, AtomicLong::get)
+                .description("threshold-ms 이상 걸린 sql 수")
+                .register(registry);
+    }
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        if (thresholdNanos < 0 || timeElapsedNanos < thresholdNanos) {
+            return;
+        }
+        String sql = statementInformation.getSql();
+        SlowQuery slowQuery = new SlowQuery(LocalDateTime.now(), TimeUnit.NANOSECONDS.toMillis(timeElapsedNanos),
+                sql, parametersOf(sql), callSite(), e == null ? null : e.getMessage());
+        buffer.set((int) (sequence.getAndIncrement() % buffer.length()), slowQuery);
+        log.warn("느린 sql {}ms at {} : {}", slowQuery.getElapsedMs(), slowQuery.getCallSite(), SqlStats.shapeOf(sql));
+    }
+
+    /**
+     * 최근 느린 sql, 최신순
+     */
+    public List<SlowQuery> getSlowQueries() {
+        List<SlowQuery> result = new ArrayList<>();
+        long last = sequence.get();
+        for (long i = last - 1; i >= Math.max(0, last - buffer.length()); i--) {
+            SlowQuery slowQuery = buffer.get((int) (i % buffer.length()));
+            if (slowQuery != null) {
+                result.add(slowQuery);
+            }
+        }
+        return result;
+    }
+
+    public void clear() {
+        for (int i = 0; i < buffer.length(); i++) {
+            buffer.set(i, null);
+        }
+    }
+
+    static String parametersOf(String sql) {
+        if (sql == null) {
+            return "";
+        }
+        int parameters = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            if (sql.charAt(i) == '?') {
+                parameters++;
+            }
+        }
+        List<Integer> inLists = new ArrayList<>();
+        Matcher matcher = IN_LIST.matcher(sql);
+        while (matcher.find()) {
+            inLists.add(matcher.group(1).split(",").length);
+        }
+        return inLists.isEmpty() ? "params=" + parameters : "params=" + parameters + ", in=" + inLists;
+    }
+
+    //프록시/모니터링/datasource 래퍼 클래스를 건너뛴 첫 번째 애플리케이션 프레임
+    static String callSite() {
+        for (StackTraceElement frame : new Throwable().getStackTrace()) {
+            String className = frame.getClassName();
+            if (className.startsWith(APP_PACKAGE)
+                    && !className.startsWith(APP_PACKAGE + "monitoring.")
+                    && !className.startsWith(APP_PACKAGE + "config.")
+                    && !className.contains("$$")) {
+                return className.substring(APP_PACKAGE.length()) + "." + frame.getMethodName() + ":" + frame.getLineNumber();
+            }
+        }
+        return "unknown";
+    }
+
+    @Getter
+    public static class SlowQuery {
+        private final LocalDateTime executedAt;
+        private final long elapsedMs;
+        private final String sql;
+        private final String parameters;
+        private final String callSite;
+        private final String error;
+
+        SlowQuery(LocalDateTime executedAt, long elapsedMs, String sql, String parameters, String callSite, String error) {
+            this.executedAt = executedAt;
+            this.elapsedMs = elapsedMs;
+            this.sql = sql;
+            this.parameters = parameters;
+            this.callSite = callSite;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package jpabook.jpashop.monitoring;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
+
+/**
+ * 한 범위(http 요청, 서비스 메서드)에서 실행된 sql 통계
+ *
+ * 현재 스레드에 열려 있는 범위들을 스택으로 관리하고, sql 이 실행되면 열려 있는 모든 범위에 더한다
+ * (요청 안에서 호출된 서비스 메서드의 sql 은 요청과 메서드 양쪽에 집계된다)
+ *
+ * 같은 모양의 select 가 반복되면 N+1 로 의심한다 - 값/IN 목록 길이만 다른 sql 은 같은 모양으로 본다
+ *
+ * 범위는 스레드에 묶이므로 다른 스레드에서 실행된 sql 은 그대로는 집계되지 않는다
+ * - fan-out-N(ParallelQueryRunner), in-query-N(InQueryBatchLoader) : 호출한 쪽이 결과를 기다리므로 propagate 로 범위를 넘겨 같이 집계한다
+ * - db-N(DbTaskExecutor) : 요청이 끝난 뒤에도 실행될 수 있어 넘기지 않는다, 그 sql 은 요청/메서드 범위에 집계되지 않는다
+ */
+public class SqlStats {
+
+    private static final ThreadLocal<Deque<SqlStats>> SCOPES = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+\\b");
+    private static final Pattern IN_LIST = Pattern.compile("in \\(\\?(?:, ?\\?)*\\)");
+
+    private final String scope;
+    private long statements;
+    private long rows;
+    private long nanos;
+    private final Map<String, Integer> selectShapes = new HashMap<>();
+
+    private SqlStats(String scope) {
+        this.scope = scope;
+    }
+
+    /**
+     * 현재 스레드에 새 범위를 연다, 반드시 close 해야 한다
+     */
+    public static SqlStats open(String scope) {
+        SqlStats stats = new SqlStats(scope);
+        SCOPES.get().push(stats);
+        return stats;
+    }
+
+    public void close() {
+        Deque<SqlStats> scopes = SCOPES.get();
+        scopes.remove(this);
+        if (scopes.isEmpty()) {
+            SCOPES.remove();
+        }
+    }
+
+    /**
+     * 현재 스레드에서 가장 바깥의 해당 scope 범위 (없으면 null)
+     */
+    public static SqlStats outermost(String scope) {
+        SqlStats found = null;
+        for (SqlStats stats : SCOPES.get()) {
+            if (stats.scope.equals(scope)) {
+                found = stats;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 현재 스레드에 열린 범위를 다른 스레드에서 실행할 작업에 넘긴다
+     * 작업이 실행되는 동안 그 스레드의 sql 도 같은 범위에 집계되고, 끝나면 그 스레드의 원래 범위로 돌아간다
+     */
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        Deque<SqlStats> scopes = SCOPES.get();
+        if (scopes.isEmpty()) {
+            SCOPES.remove();
+            return task;
+        }
+        List<SqlStats> captured = new ArrayList<>(scopes);
+        return () -> {
+            Deque<SqlStats> previous = SCOPES.get();
+            SCOPES.set(new ArrayDeque<>(captured));
+            try {
+                return task.call();
+            } finally {
+                if (previous.isEmpty()) {
+                    SCOPES.remove();
+                } else {
+                    SCOPES.set(previous);
+                }
+            }
+        };
+    }
+
+    //propagate 로 넘긴 범위는 여러 스레드에서 동시에 더하므로 범위마다 동기화
+    static void recordStatement(String sql, long elapsedNanos) {
+        Deque<SqlStats> scopes = SCOPES.get();
+        if (scopes.isEmpty()) {
+            return;
+        }
+        String shape = shapeOf(sql);
+        boolean select = shape.startsWith("select");
+        for (SqlStats stats : scopes) {
+            synchronized (stats) {
+                stats.statements++;
+                stats.nanos += elapsedNanos;
+                if (select) {
+                    stats.selectShapes.merge(shape, 1, Integer::sum);
+                }
+            }
+        }
+    }
+
+    static void recordRow() {
+        for (SqlStats stats : SCOPES.get()) {
+            synchronized (stats) {
+                stats.rows++;
+            }
+        }
+    }
+
+    static String shapeOf(String sql) {
+        String shape = WHITESPACE.matcher(sql.trim().toLowerCase()).replaceAll(" ");
+        shape = STRING_LITERAL.matcher(shape).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        return IN_LIST.matcher(shape).replaceAll("in (?)");
+    }
+
+    /**
+     * threshold 번 이상 반복된 select 모양과 반복 횟수
+     */
+    public synchronized Map<String, Integer> repeatedSelects(int threshold) {
+        Map<String, Integer> repeated = new LinkedHashMap<>();
+        selectShapes.forEach((shape, count) -> {
+            if (count >= threshold) {
+                repeated.put(shape, count);
+            }
+        });
+        return repeated;
+    }
+
+    public String getScope() {
+        return scope;
+    }
+
+    public synchronized long getStatements() {
+        return statements;
+    }
+
+    public synchronized long getRows() {
+        return rows;
+    }
+
+    public synchronized long getNanos() {
+        return nanos;
+    }
+}
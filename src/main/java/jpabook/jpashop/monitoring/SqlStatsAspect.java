@@ -0,0 +1,43 @@
+package jpabook.jpashop.monitoring;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * 서비스의 @Transactional 메서드 단위 sql 통계
+ * 트랜잭션/재시도 advice 보다 바깥에서 실행되어 커밋 시점 flush 와 재시도한 sql 까지 포함한다
+ */
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 2)
+@RequiredArgsConstructor
+public class SqlStatsAspect {
+
+    private final SqlStatsRecorder recorder;
+
+    @Around("within(jpabook.jpashop.service..*) && " +
+            "(@within(org.springframework.transaction.annotation.Transactional) || " +
+            "@annotation(org.springframework.transaction.annotation.Transactional))")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!recorder.isEnabled()) {
+            return joinPoint.proceed();
+        }
+
+        String name = joinPoint.getSignature().getDeclaringType().getSimpleName() + "." + joinPoint.getSignature().getName();
+        SqlStats stats = recorder.start(SqlStatsRecorder.METHOD);
+        Object result;
+        boolean suspected;
+        try {
+            result = joinPoint.proceed();
+        } finally {
+            suspected = recorder.finish(stats, name);
+        }
+        recorder.check(suspected, name);    //예외로 끝난 경우는 원래 예외를 그대로 던진다
+        return result;
+    }
+}
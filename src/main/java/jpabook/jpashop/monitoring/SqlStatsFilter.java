@@ -0,0 +1,57 @@
+package jpabook.jpashop.monitoring;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * http 요청 단위 sql 통계
+ * 응답 헤더(X-Sql-*)는 body 를 쓰기 전에 넣어야 해서 @ResponseBody 응답은 SqlStatsResponseAdvice 가,
+ * 그 외(뷰 렌더링 등) 아직 커밋되지 않은 응답은 여기서 넣는다
+ */
+@Component
+@RequiredArgsConstructor
+public class SqlStatsFilter extends OncePerRequestFilter {
+
+    static final String STATEMENTS_HEADER = "X-Sql-Statements";
+    static final String ROWS_HEADER = "X-Sql-Rows";
+    static final String TIME_HEADER = "X-Sql-Time-Ms";
+
+    private final SqlStatsRecorder recorder;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!recorder.isEnabled()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        SqlStats stats = recorder.start(SqlStatsRecorder.REQUEST);
+        boolean suspected;
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (!response.isCommitted()) {
+                response.setHeader(STATEMENTS_HEADER, String.valueOf(stats.getStatements()));
+                response.setHeader(ROWS_HEADER, String.valueOf(stats.getRows()));
+                response.setHeader(TIME_HEADER, String.valueOf(stats.getNanos() / 1_000_000));
+            }
+            suspected = recorder.finish(stats, nameOf(request));
+        }
+        recorder.check(suspected, nameOf(request));
+    }
+
+    //uri 그대로 쓰면 태그가 무한히 늘어나므로 매핑된 패턴을 쓴다
+    private String nameOf(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + " " + (pattern == null ? "UNKNOWN" : pattern);
+    }
+}
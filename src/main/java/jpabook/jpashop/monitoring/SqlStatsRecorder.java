@@ -0,0 +1,93 @@
+package jpabook.jpashop.monitoring;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jpabook.jpashop.exception.NPlusOneDetectedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SqlStats 범위를 열고 닫으면서 메트릭 기록 + N+1 의심 검사
+ *
+ * 메트릭 (scope = request | method, name = uri 패턴 | 클래스.메서드)
+ * - jpashop.sql.statements : 범위당 sql 실행 수
+ * - jpashop.sql.rows : 범위당 조회 row 수
+ * - jpashop.sql.time : 범위당 db 실행 시간
+ * - jpashop.sql.n_plus_one : N+1 의심 건수
+ *
+ * jpashop.sql-stats.fail-fast = true 면 N+1 의심 시 NPlusOneDetectedException (테스트용)
+ */
+@Slf4j
+@Component
+public class SqlStatsRecorder {
+
+    public static final String REQUEST = "request";
+    public static final String METHOD = "method";
+
+    private final boolean enabled;
+    private final int nPlusOneThreshold;
+    private final boolean failFast;
+    private final MeterRegistry meterRegistry;
+
+    public SqlStatsRecorder(@Value("${jpashop.sql-stats.enabled:true}") boolean enabled,
+                            @Value("${jpashop.sql-stats.n-plus-one-threshold:10}") int nPlusOneThreshold,
+                            @Value("${jpashop.sql-stats.fail-fast:false}") boolean failFast,
+                            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.nPlusOneThreshold = nPlusOneThreshold;
+        this.failFast = failFast;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public SqlStats start(String scope) {
+        return SqlStats.open(scope);
+    }
+
+    /**
+     * 범위를 닫고 메트릭 기록, N+1 의심이면 경고 로그
+     * @return N+1 의심 여부
+     */
+    public boolean finish(SqlStats stats, String name) {
+        stats.close();
+
+        DistributionSummary.builder("jpashop.sql.statements")
+                .tags("scope", stats.getScope(), "name", name)
+                .register(meterRegistry)
+                .record(stats.getStatements());
+        DistributionSummary.builder("jpashop.sql.rows")
+                .tags("scope", stats.getScope(), "name", name)
+                .register(meterRegistry)
+                .record(stats.getRows());
+        Timer.builder("jpashop.sql.time")
+                .tags("scope", stats.getScope(), "name", name)
+                .register(meterRegistry)
+                .record(stats.getNanos(), TimeUnit.NANOSECONDS);
+
+        Map<String, Integer> repeated = stats.repeatedSelects(nPlusOneThreshold);
+        if (repeated.isEmpty()) {
+            return false;
+        }
+        meterRegistry.counter("jpashop.sql.n_plus_one", "scope", stats.getScope(), "name", name).increment();
+        repeated.forEach((shape, count) ->
+                log.warn("N+1 의심 - {} {} 에서 같은 select 가 {}번 실행되었습니다. sql={}", stats.getScope(), name, count, shape));
+        return true;
+    }
+
+    /**
+     * fail-fast 모드에서 N+1 의심이면 예외
+     */
+    public void check(boolean suspected, String name) {
+        if (suspected && failFast) {
+            throw new NPlusOneDetectedException("N+1 의심 쿼리가 실행되었습니다. " + name);
+        }
+    }
+}
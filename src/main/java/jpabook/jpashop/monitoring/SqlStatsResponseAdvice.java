@@ -0,0 +1,34 @@
+package jpabook.jpashop.monitoring;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * @ResponseBody 응답을 쓰기 직전에 요청의 sql 통계를 헤더로 넣는다
+ */
+@ControllerAdvice
+public class SqlStatsResponseAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        SqlStats stats = SqlStats.outermost(SqlStatsRecorder.REQUEST);
+        if (stats != null) {
+            response.getHeaders().set(SqlStatsFilter.STATEMENTS_HEADER, String.valueOf(stats.getStatements()));
+            response.getHeaders().set(SqlStatsFilter.ROWS_HEADER, String.valueOf(stats.getRows()));
+            response.getHeaders().set(SqlStatsFilter.TIME_HEADER, String.valueOf(stats.getNanos() / 1_000_000));
+        }
+        return body;
+    }
+}
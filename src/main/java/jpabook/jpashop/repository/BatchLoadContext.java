@@ -0,0 +1,104 @@
+package jpabook.jpashop.repository;
+
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.proxy.LazyInitializer;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * DTO 변환 전에 지연로딩 연관관계를 모아서 한 번에 초기화한다 (DataLoader 방식)
+ *
+ * 1. DTO 가 접근할 프록시/컬렉션을 register 로 등록 (프록시의 id 만 꺼내므로 초기화되지 않는다)
+ * 2. resolve 에서 엔티티 타입(컬렉션 role)마다 IN 쿼리 한 번으로 영속성 컨텍스트에 올린다
+ * 3. 이후 DTO 생성자에서 프록시에 접근하면 영속성 컨텍스트에서 찾기 때문에 추가 쿼리가 없다
+ *
+ * 쿼리 수가 row 수가 아니라 엔티티 타입 수에 비례한다
+ * resolve 는 조회한 트랜잭션(영속성 컨텍스트) 안에서 호출해야 한다
+ */
+public class BatchLoadContext {
+
+    private static final int MAX_IN_SIZE = 1000;
+
+    private final Session session;
+    private final Map<String, Set<Serializable>> entityKeys = new LinkedHashMap<>();
+    private final List<HibernateProxy> proxies = new ArrayList<>();
+    private final Map<String, List<Object>> collectionOwners = new LinkedHashMap<>();
+
+    BatchLoadContext(Session session) {
+        this.session = session;
+    }
+
+    /**
+     * x to one 연관관계(프록시) 등록, 이미 초기화되었으면 무시
+     */
+    public void register(Object association) {
+        if (association instanceof HibernateProxy) {
+            LazyInitializer initializer = ((HibernateProxy) association).getHibernateLazyInitializer();
+            if (initializer.isUninitialized()) {
+                entityKeys.computeIfAbsent(initializer.getEntityName(), k -> new LinkedHashSet<>())
+                        .add(initializer.getIdentifier());
+                proxies.add((HibernateProxy) association);
+            }
+        }
+    }
+
+    /**
+     * 컬렉션 연관관계 등록, 이미 초기화되었으면 무시
+     */
+    public void register(Collection<?> collection) {
+        if (collection instanceof PersistentCollection) {
+            PersistentCollection persistentCollection = (PersistentCollection) collection;
+            if (!persistentCollection.wasInitialized()) {
+                collectionOwners.computeIfAbsent(persistentCollection.getRole(), k -> new ArrayList<>())
+                        .add(persistentCollection.getOwner());
+            }
+        }
+    }
+
+    /**
+     * 등록된 키를 타입별로 한 번에 조회, 다음 단계(ex. orderItems -> item)를 위해 등록 목록은 비운다
+     */
+    public void resolve() {
+        entityKeys.forEach((entityName, ids) -> multiLoad(entityClass(entityName), ids));
+        //엔티티는 이미 영속성 컨텍스트에 있으므로 쿼리 없이 프록시만 초기화 (트랜잭션 밖에서도 접근 가능하도록)
+        proxies.forEach(Hibernate::initialize);
+
+        //role = 엔티티이름.필드명, fetch join 으로 영속성 컨텍스트에 있는 owner 의 컬렉션을 채운다
+        collectionOwners.forEach((role, owners) -> {
+            int idx = role.lastIndexOf('.');
+            String entityName = role.substring(0, idx);
+            String property = role.substring(idx + 1);
+            for (int from = 0; from < owners.size(); from += MAX_IN_SIZE) {
+                session.createQuery("select distinct e from " + entityName + " e" +
+                        " left join fetch e." + property +
+                        " where e in :owners")
+                        .setParameter("owners", owners.subList(from, Math.min(from + MAX_IN_SIZE, owners.size())))
+                        .getResultList();
+            }
+        });
+
+        entityKeys.clear();
+        proxies.clear();
+        collectionOwners.clear();
+    }
+
+    private <T> List<T> multiLoad(Class<T> entityClass, Set<Serializable> ids) {
+        return session.byMultipleIds(entityClass)
+                .withBatchSize(Math.min(ids.size(), MAX_IN_SIZE))
+                .multiLoad(new ArrayList<>(ids));
+    }
+
+    private Class<?> entityClass(String entityName) {
+        return session.getSessionFactory().getMetamodel().entity(entityName).getJavaType();
+    }
+}
@@ -0,0 +1,22 @@
+package jpabook.jpashop.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Session;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+
+/**
+ * 현재 트랜잭션의 영속성 컨텍스트에 묶인 BatchLoadContext 를 만든다
+ * 한 요청(서비스 호출)에서 DTO 변환 한 번마다 새로 만들어 쓴다
+ */
+@Component
+@RequiredArgsConstructor
+public class EntityBatchLoader {
+
+    private final EntityManager em;
+
+    public BatchLoadContext newContext() {
+        return new BatchLoadContext(em.unwrap(Session.class));
+    }
+}
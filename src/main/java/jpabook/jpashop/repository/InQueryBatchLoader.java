@@ -0,0 +1,133 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.monitoring.SqlStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * IN 절 조회를 chunk 로 나눠서 실행한다 (부모 id 목록으로 자식 DTO 를 조회하는 경우 등)
+ *
+ * - id 목록을 그대로 IN 에 넣으면 목록 길이마다 다른 sql 이 되어 statement/plan 캐시를 못 쓰고 DB 파라미터 개수 제한에도 걸린다
+ * - chunk 크기를 2의 거듭제곱으로 맞추고 빈 자리는 마지막 id 로 채워서 sql 모양이 log2(chunkSize) 가지로 제한되도록 한다
+ * - chunk 가 여러 개면 제한된 크기의 전용 스레드 풀에서 병렬로 실행한다
+ *
+ * 병렬 실행된 chunk 는 호출한 쪽 트랜잭션 밖(각자 커넥션)에서 조회되므로 DTO 조회처럼 읽기 전용 쿼리에만 사용한다
+ * 호출한 쪽에 트랜잭션이 있으면 병렬로 실행하지 않고 그 트랜잭션(영속성 컨텍스트, 커넥션)에서 차례로 조회한다
+ * - 커넥션을 쥔 채 다른 커넥션을 기다리지 않도록 (풀이 고갈되면 서로 기다리다 connectionTimeout)
+ * - 커밋 안 된 변경이나 트랜잭션 격리 수준에 따른 스냅샷이 chunk 마다 달라지지 않도록
+ */
+@Component
+public class InQueryBatchLoader {
+
+    private final int chunkSize;
+    private final ThreadPoolExecutor executor;
+
+    public InQueryBatchLoader(@Value("${jpashop.in-query.chunk-size:512}") int chunkSize,
+                              @Value("${jpashop.in-query.parallelism:4}") int parallelism) {
+        this.chunkSize = Integer.highestOneBit(Math.max(chunkSize, 1));
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(parallelism * 16),
+                r -> {
+                    Thread thread = new Thread(r, "in-query-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());    //큐가 가득 차면 호출한 스레드에서 실행
+    }
+
+    /**
+     * @param keys  조회할 id 목록 (중복 제거 후 조회)
+     * @param query chunk 하나를 조회하는 쿼리
+     */
+    public <K, V> List<V> load(Collection<K> keys, Function<List<K>, List<V>> query) {
+        List<List<K>> chunks = chunk(new ArrayList<>(new LinkedHashSet<>(keys)), chunkSize);
+        if (chunks.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (chunks.size() == 1) {
+            return query.apply(chunks.get(0));  //한 번이면 스레드를 넘기지 않는다
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            List<V> result = new ArrayList<>();
+            for (List<K> chunk : chunks) {
+                result.addAll(query.apply(chunk));
+            }
+            return result;
+        }
+
+        List<Future<List<V>>> futures = new ArrayList<>();
+        for (List<K> chunk : chunks) {
+            futures.add(executor.submit(SqlStats.propagate(() -> query.apply(chunk))));
+        }
+
+        List<V> result = new ArrayList<>();
+        for (Future<List<V>> future : futures) {
+            result.addAll(get(future));
+        }
+        return result;
+    }
+
+    /**
+     * 조회 결과를 부모 id 기준으로 묶어서 반환
+     */
+    public <K, V> Map<K, List<V>> loadGrouped(Collection<K> keys, Function<List<K>, List<V>> query, Function<V, K> keyOf) {
+        return load(keys, query).stream().collect(Collectors.groupingBy(keyOf));
+    }
+
+    static <K> List<List<K>> chunk(List<K> keys, int chunkSize) {
+        List<List<K>> chunks = new ArrayList<>();
+        for (int from = 0; from < keys.size(); from += chunkSize) {
+            List<K> chunk = new ArrayList<>(keys.subList(from, Math.min(from + chunkSize, keys.size())));
+            int padded = paddedSize(chunk.size());
+            K last = chunk.get(chunk.size() - 1);
+            while (chunk.size() < padded) {
+                chunk.add(last);
+            }
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    //size 이상인 가장 작은 2의 거듭제곱
+    static int paddedSize(int size) {
+        int highest = Integer.highestOneBit(size);
+        return highest == size ? size : highest << 1;
+    }
+
+    private static <V> List<V> get(Future<List<V>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("IN 절 조회가 중단되었습니다.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
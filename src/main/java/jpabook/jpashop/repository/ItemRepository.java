@@ -2,10 +2,20 @@ package jpabook.jpashop.repository;
 
 import jpabook.jpashop.domain.item.Item;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.Session;
+import org.hibernate.annotations.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.persistence.EntityManager;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 @Repository
 @RequiredArgsConstructor
@@ -21,11 +31,106 @@ public class ItemRepository {
         }
     }
 
+    //2차 캐시에 있으면 db 조회 없음
     public Item findOne(Long id){
         return em.find(Item.class, id);
     }
 
+    //2차 캐시/영속성 컨텍스트에 없는 것만 IN 쿼리로 조회, 없는 id 는 결과에서 빠진다
+    public List<Item> findAllById(Collection<Long> ids){
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return em.unwrap(Session.class).byMultipleIds(Item.class)
+                .withBatchSize(Math.min(ids.size(), 1000))
+                .multiLoad(new ArrayList<>(ids))
+                .stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    //쿼리 캐시에는 id 목록만 저장되고 엔티티는 2차 캐시에서 꺼낸다
+    //item 테이블이 변경되면 쿼리 캐시만 무효화되어 id 조회 한 번만 다시 나간다
     public List<Item> findAll(){
-        return em.createQuery("select i from Item i", Item.class).getResultList();
+        return em.createQuery("select i from Item i", Item.class)
+                .setHint(QueryHints.CACHEABLE, true)
+                .getResultList();
+    }
+
+    //카테고리 상품 중 id 가 afterId 보다 큰 상품 수
+    public long countByCategory(Long categoryId, Long afterId){
+        return em.createQuery("select count(i) from Category c join c.items i where c.id = :categoryId and i.id > :afterId", Long.class)
+                .setParameter("categoryId", categoryId)
+                .setParameter("afterId", afterId)
+                .getSingleResult();
+    }
+
+    //카테고리 상품 id 를 id 순으로 afterId 다음부터 limit 개 (keyset 페이징)
+    public List<Long> findIdsByCategory(Long categoryId, Long afterId, int limit){
+        return em.createQuery("select i.id from Category c join c.items i" +
+                        " where c.id = :categoryId and i.id > :afterId order by i.id", Long.class)
+                .setParameter("categoryId", categoryId)
+                .setParameter("afterId", afterId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    public Integer findMaxPriceByCategory(Long categoryId){
+        return em.createQuery("select max(i.price) from Category c join c.items i where c.id = :categoryId", Integer.class)
+                .setParameter("categoryId", categoryId)
+                .getSingleResult();
+    }
+
+    /**
+     * 가격을 percent 만큼 올리고(음수면 내리고) 원 단위 반올림, version 도 올린다
+     * 곱셈은 int 범위를 넘을 수 있어 long 으로 계산한다 (결과가 int 범위인지는 호출한 쪽에서 확인)
+     * 벌크 연산이라 영속성 컨텍스트를 거치지 않고, 커밋 시점에 hibernate 가 item 2차 캐시 region 과 쿼리 캐시를 비운다
+     */
+    public int bulkUpdatePrice(List<Long> ids, int percent){
+        return em.createQuery("update versioned Item i set i.price = (cast(i.price as long) * :factor + 50) / 100 where i.id in :ids")
+                .setParameter("factor", 100L + percent)
+                .setParameter("ids", ids)
+                .executeUpdate();
+    }
+
+    //2차 캐시를 거치지 않고 db 값으로 조회
+    public List<Item> findAllByIdFromDb(Collection<Long> ids){
+        return em.createQuery("select i from Item i where i.id in :ids", Item.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
+    /**
+     * 상품별 재고 증가(상품 id -> 수량) - 상품을 조회하지 않고 jdbc batch 한 번, version 도 올린다
+     * hibernate 를 거치지 않으므로 영속성 컨텍스트의 Item 은 갱신되지 않고, 2차 캐시는 커밋 후 해당 상품만 제거한다
+     */
+    public void addStockAll(Map<Long, Integer> quantities){
+        if (quantities.isEmpty()) {
+            return;
+        }
+        em.flush();     //jdbc 로 바꾸기 전에 쌓인 변경(재고 포함)을 먼저 반영
+        em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "update item set stock_quantity = stock_quantity + ?, version = version + 1 where item_id = ?")) {
+                for (Map.Entry<Long, Integer> quantity : quantities.entrySet()) {
+                    ps.setInt(1, quantity.getValue());
+                    ps.setLong(2, quantity.getKey());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        });
+        List<Long> itemIds = new ArrayList<>(quantities.keySet());
+        Runnable evict = () -> itemIds.forEach(id -> em.getEntityManagerFactory().getCache().evict(Item.class, id));
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                evict.run();
+            }
+        });
     }
 }
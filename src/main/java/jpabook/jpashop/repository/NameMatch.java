@@ -0,0 +1,59 @@
+package jpabook.jpashop.repository;
+
+import java.util.Locale;
+
+/**
+ * 회원 이름 검색 방식
+ *
+ * EXACT, PREFIX 는 member.name 인덱스, IGNORE_CASE 는 소문자로 저장한 member.search_name 인덱스를 탄다
+ * CONTAINS('%이름%') 는 앞이 와일드카드라 인덱스를 못 타고 전체 scan 이다
+ */
+public enum NameMatch {
+    EXACT,          //name = ?
+    PREFIX,         //name like '이름%'
+    IGNORE_CASE,    //search_name like '소문자이름%'
+    CONTAINS;       //name like '%이름%'
+
+    public static final char ESCAPE = '\\';
+
+    /**
+     * 비교할 Member 필드
+     */
+    public String property() {
+        return this == IGNORE_CASE ? "searchName" : "name";
+    }
+
+    /**
+     * like 로 비교하는지 (EXACT 만 = 비교)
+     */
+    public boolean isLike() {
+        return this != EXACT;
+    }
+
+    /**
+     * 바인딩할 값, 입력에 들어있는 %, _ 는 ESCAPE 로 escape 해서 문자 그대로 비교한다
+     */
+    public String toParameter(String name) {
+        switch (this) {
+            case EXACT:
+                return name;
+            case PREFIX:
+                return escape(name) + "%";
+            case IGNORE_CASE:
+                return escape(name.toLowerCase(Locale.ROOT)) + "%";
+            default:
+                return "%" + escape(name) + "%";
+        }
+    }
+
+    private static String escape(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if (c == '%' || c == '_' || c == ESCAPE) {
+                sb.append(ESCAPE);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,31 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 주문 목록 화면(/orders) 한 줄 - 화면에 보이는 컬럼만 조회한다
+ * 대표상품 = 주문의 첫 번째 주문상품(order_item_id 가 가장 작은 것)
+ */
+@Data
+public class OrderListDto {
+    private Long orderId;
+    private String memberName;
+    private String itemName;       //대표상품 이름
+    private int orderPrice;        //대표상품 주문가격
+    private int count;             //대표상품 주문수량
+    private OrderStatus status;
+    private LocalDateTime orderDate;
+
+    public OrderListDto(Long orderId, String memberName, String itemName, int orderPrice, int count, OrderStatus status, LocalDateTime orderDate) {
+        this.orderId = orderId;
+        this.memberName = memberName;
+        this.itemName = itemName;
+        this.orderPrice = orderPrice;
+        this.count = count;
+        this.status = status;
+        this.orderDate = orderDate;
+    }
+}
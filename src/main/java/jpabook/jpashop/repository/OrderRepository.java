@@ -1,12 +1,18 @@
 package jpabook.jpashop.repository;
 
+import com.querydsl.core.types.Projections;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import com.sun.org.apache.xpath.internal.operations.Bool;
 import jpabook.jpashop.domain.*;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.item.QItem;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.repository.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
@@ -16,8 +22,13 @@ import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
+import static jpabook.jpashop.domain.QDelivery.delivery;
 import static jpabook.jpashop.domain.QMember.member;
 import static jpabook.jpashop.domain.QOrder.order;
 import static jpabook.jpashop.domain.QOrderItem.orderItem;
@@ -29,9 +40,12 @@ public class OrderRepository {
 
     private final JPAQueryFactory query;
 
-    public OrderRepository(EntityManager em) {
+    private final OrderSearchEngine searchEngine;
+
+    public OrderRepository(EntityManager em, OrderSearchEngine searchEngine) {
         this.em = em;
         this.query = new JPAQueryFactory(em);
+        this.searchEngine = searchEngine;
     }
 
     public void save(Order order){
@@ -65,7 +79,8 @@ public class OrderRepository {
             } else {
                 jpql += " and";
             }
-            jpql += " m.name like :name";
+            NameMatch match = orderSearch.getNameMatch();
+            jpql += " m." + match.property() + (match.isLike() ? " like :name escape '" + NameMatch.ESCAPE + "'" : " = :name");
         }
 
         TypedQuery<Order> query = em.createQuery(jpql, Order.class) .setMaxResults(1000); //최대 1000건
@@ -73,7 +88,7 @@ public class OrderRepository {
             query = query.setParameter("status", orderSearch.getOrderStatus());
         }
         if (StringUtils.hasText(orderSearch.getMemberName())) {
-            query = query.setParameter("name", orderSearch.getMemberName());
+            query = query.setParameter("name", orderSearch.getNameMatch().toParameter(orderSearch.getMemberName()));
         }
     return query.getResultList();
     }
@@ -92,9 +107,12 @@ public class OrderRepository {
         }
 //회원 이름 검색
         if (StringUtils.hasText(orderSearch.getMemberName())) {
-            Predicate name =
-                    cb.like(m.<String>get("name"), "%" +
-                            orderSearch.getMemberName() + "%");
+            NameMatch match = orderSearch.getNameMatch();
+            Path<String> property = m.get(match.property());
+            String value = match.toParameter(orderSearch.getMemberName());
+            Predicate name = match.isLike()
+                    ? cb.like(property, value, NameMatch.ESCAPE)
+                    : cb.equal(property, value);
             criteria.add(name);
 
 
@@ -104,33 +122,127 @@ public class OrderRepository {
         return query.getResultList();
     }
 
+    /**
+     * 상태/회원 이름/주문일/상품 이름/주문가격 동적 검색 - 조건 모양별로 jpql 을 캐시하는 OrderSearchEngine 이 처리한다
+     */
     public List<Order> findAll(OrderSearch orderSearch){
-//        QOrder order = QOrder.order; >> order를 QOrder.order로 하고 static Import 하면 초기화도 줄일 수 있다
+        return searchEngine.search(orderSearch);
+    }
+
+    /**
+     * 주문 목록 화면용 - 엔티티 대신 화면 컬럼만 dto 로 조회하고 페이징은 db 에서 한다
+     * 대표상품(첫 번째 주문상품)은 min(order_item_id) 서브쿼리로 한 건만 join 하므로 주문 1건 = row 1개
+     */
+    public Page<OrderListDto> findOrderList(OrderSearch orderSearch, Pageable pageable) {
+        QOrderItem firstItem = new QOrderItem("firstItem");
+        BooleanExpression isFirstItem = orderItem.id.eq(JPAExpressions
+                .select(firstItem.id.min())
+                .from(firstItem)
+                .where(firstItem.order.eq(order)));
 
-        List<Order> orders = query
-                .select(order)
+        List<OrderListDto> content = query
+                .select(Projections.constructor(OrderListDto.class,
+                        order.id,
+                        member.name,
+                        item.name,
+                        orderItem.orderPrice,
+                        orderItem.count,
+                        order.status,
+                        order.orderDate))
                 .from(order)
-                .join(order.member, member).fetchJoin()
-                .join(order.orderItems, orderItem).fetchJoin()
-                .join(orderItem.item, item).fetchJoin()
-                .where(statusEq(orderSearch.getOrderStatus()), nameLike(orderSearch.getMemberName())) // where and condition
-                .limit(1000)
+                .join(order.member, member)
+                .join(order.orderItems, orderItem)
+                .join(orderItem.item, item)
+                .where(isFirstItem, searchEngine.where(orderSearch))
+                .orderBy(order.id.desc())
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
                 .fetch();
 
-        return orders;
+        //마지막 페이지 등 content 만으로 전체 건수를 알 수 있으면 count 쿼리는 생략된다
+        //주문상품이 없는 주문은 목록에 나오지 않으므로 count 도 같은 조인/조건으로 센다
+        JPAQuery<Long> countQuery = query
+                .select(order.count())
+                .from(order)
+                .join(order.member, member)
+                .join(order.orderItems, orderItem)
+                .join(orderItem.item, item)
+                .where(isFirstItem, searchEngine.where(orderSearch));
+
+        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchOne);
+    }
+
+    //== 일괄 취소 ==//
+    //IN 절 하나에 넣을 최대 주문 수
+    private static final int CANCEL_CHUNK_SIZE = 1024;
+
+    /**
+     * 취소할 수 있는(ORDER 상태) 주문 id -> 배송 상태, 배송완료 검증을 주문마다 하지 않고 조회 한 번으로
+     */
+    public Map<Long, DeliveryStatus> findCancelTargets(Collection<Long> orderIds) {
+        Map<Long, DeliveryStatus> targets = new LinkedHashMap<>();
+        for (List<Long> chunk : InQueryBatchLoader.chunk(new ArrayList<>(new LinkedHashSet<>(orderIds)), CANCEL_CHUNK_SIZE)) {
+            targets.putAll(findCancelTargets(order.id.in(chunk)));
+        }
+        return targets;
+    }
+
+    public Map<Long, DeliveryStatus> findCancelTargets(Long memberId) {
+        return findCancelTargets(order.member.id.eq(memberId));
+    }
+
+    public Map<Long, DeliveryStatus> findCancelTargets(OrderSearch orderSearch) {
+        return findCancelTargets(searchEngine.where(orderSearch));
     }
 
-    private BooleanExpression nameLike(String memberName) {
-        if(!StringUtils.hasText(memberName))
-            return null;
-        return member.name.like(memberName);
+    //criteria 의 Predicate 와 이름이 겹쳐서 전체 이름으로
+    private Map<Long, DeliveryStatus> findCancelTargets(com.querydsl.core.types.Predicate condition) {
+        Map<Long, DeliveryStatus> targets = new LinkedHashMap<>();
+        query.select(order.id, delivery.status)
+                .from(order)
+                .join(order.member, member)
+                .join(order.delivery, delivery)
+                .where(condition, order.status.eq(OrderStatus.ORDER))
+                .orderBy(order.id.asc())
+                .fetch()
+                .forEach(tuple -> targets.put(tuple.get(order.id), tuple.get(delivery.status)));
+        return targets;
     }
 
-    private BooleanExpression statusEq(OrderStatus statusCond){
-        if(statusCond == null)
-            return null;
-        return order.status.eq(statusCond);
+    /**
+     * 주문 상태를 CANCEL 로 - 주문을 조회하지 않고 update 한 번 (version 도 올린다)
+     * 그 사이 취소/배송완료된 주문은 빠지므로 반환값이 요청한 수보다 작으면 다른 트랜잭션과 충돌한 것
+     * 영속성 컨텍스트의 Order 는 갱신되지 않는다
+     */
+    public int cancelAll(List<Long> orderIds) {
+        int canceled = 0;
+        for (List<Long> chunk : InQueryBatchLoader.chunk(orderIds, CANCEL_CHUNK_SIZE)) {
+            canceled += em.createQuery("update versioned Order o set o.status = :cancel" +
+                            " where o.id in :orderIds and o.status = :order" +
+                            " and not exists (select d.id from Delivery d where d = o.delivery and d.status = :comp)")
+                    .setParameter("cancel", OrderStatus.CANCEL)
+                    .setParameter("order", OrderStatus.ORDER)
+                    .setParameter("comp", DeliveryStatus.COMP)
+                    .setParameter("orderIds", chunk)
+                    .executeUpdate();
+        }
+        return canceled;
+    }
 
+    /**
+     * 주문들의 상품별 주문 수량 합계 (상품 id -> 수량), 재고 복구용
+     */
+    public Map<Long, Integer> sumCountByItem(List<Long> orderIds) {
+        Map<Long, Integer> counts = new LinkedHashMap<>();
+        for (List<Long> chunk : InQueryBatchLoader.chunk(orderIds, CANCEL_CHUNK_SIZE)) {
+            query.select(orderItem.item.id, orderItem.count.sum())
+                    .from(orderItem)
+                    .where(orderItem.order.id.in(chunk))
+                    .groupBy(orderItem.item.id)
+                    .fetch()
+                    .forEach(tuple -> counts.merge(tuple.get(orderItem.item.id), tuple.get(orderItem.count.sum()), Integer::sum));
+        }
+        return counts;
     }
 
     //fetch join
@@ -144,6 +256,27 @@ public class OrderRepository {
                 .getResultList();
     }
 
+    //keyset(seek) 페이징 - offset 만큼 읽고 버리지 않고 (order_date, order_id) 인덱스에서 커서 다음부터 바로 읽는다
+    //페이지가 깊어져도 조회 비용이 일정하다
+    public List<Order> findAllWithMemberDelivery(OrderCursor cursor, int limit) {
+        String jpql = "select o from Order o" +
+                " join fetch o.member m" +
+                " join fetch o.delivery d";
+        if (cursor != null) {
+            jpql += " where o.orderDate > :orderDate" +
+                    " or (o.orderDate = :orderDate and o.id > :orderId)";
+        }
+        jpql += " order by o.orderDate, o.id";
+
+        TypedQuery<Order> query = em.createQuery(jpql, Order.class)
+                .setMaxResults(limit);
+        if (cursor != null) {
+            query.setParameter("orderDate", cursor.getOrderDate());
+            query.setParameter("orderId", cursor.getOrderId());
+        }
+        return query.getResultList();
+    }
+
     public List<Order> findAllWithMemberDelivery() {
         return em.createQuery(
                 "select o from Order o"
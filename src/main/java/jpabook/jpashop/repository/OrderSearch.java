@@ -3,6 +3,9 @@ package jpabook.jpashop.repository;
 import jpabook.jpashop.domain.OrderStatus;
 import lombok.Getter;
 import lombok.Setter;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
 
 @Getter
 @Setter
@@ -10,4 +13,18 @@ public class OrderSearch {
 
     private String memberName; //회원 이름
     private OrderStatus orderStatus;    //주문 상태[ORDER,CANCEL]
+    private NameMatch nameMatch = NameMatch.PREFIX; //회원 이름 검색 방식
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate orderDateFrom;    //주문일 시작(포함)
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate orderDateTo;      //주문일 끝(포함)
+    private String itemName;    //주문상품 이름(대소문자 무시 포함 검색)
+    private Integer minPrice;   //주문상품 주문가격 최소
+    private Integer maxPrice;   //주문상품 주문가격 최대
+
+    //요청에서 null 로 들어와도 기본 검색 방식으로
+    public NameMatch getNameMatch() {
+        return nameMatch == null ? NameMatch.PREFIX : nameMatch;
+    }
 }
@@ -0,0 +1,256 @@
+package jpabook.jpashop.repository;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.Param;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.JPQLQuery;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAUtil;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.QOrderItem;
+import jpabook.jpashop.domain.item.QItem;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.StringUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import static jpabook.jpashop.domain.QMember.member;
+import static jpabook.jpashop.domain.QOrder.order;
+
+/**
+ * OrderSearch 조건(상태, 회원 이름, 주문일 범위, 상품 이름, 주문가격 범위) 으로 주문을 찾는다
+ *
+ * 어떤 조건이 들어왔는지(조건 모양)가 같으면 만들어지는 jpql 도 같으므로,
+ * 조건 모양마다 QueryDSL 로 한 번만 jpql 을 만들어(파라미터는 :status 같은 이름으로) 캐시하고 이후에는 값만 바인딩한다
+ * - QueryDSL 쿼리 조립/직렬화를 매번 하지 않는다
+ * - jpql 문자열이 같으니 hibernate query plan cache(hibernate.query.plan_cache_max_size) 에서 파싱 결과를 재사용한다
+ * 캐시 크기는 jpashop.order-search.plan-cache-size 로 제한(LRU)
+ */
+@Repository
+public class OrderSearchEngine implements MeterBinder {
+
+    private static final int MAX_RESULTS = 1000;
+
+    private static final Param<OrderStatus> STATUS = new Param<>(OrderStatus.class, "status");
+    private static final Param<String> MEMBER_NAME = new Param<>(String.class, "memberName");
+    private static final Param<LocalDateTime> DATE_FROM = new Param<>(LocalDateTime.class, "dateFrom");
+    private static final Param<LocalDateTime> DATE_TO = new Param<>(LocalDateTime.class, "dateTo");
+    private static final Param<String> ITEM_NAME = new Param<>(String.class, "itemName");
+    private static final Param<Integer> MIN_PRICE = new Param<>(Integer.class, "minPrice");
+    private static final Param<Integer> MAX_PRICE = new Param<>(Integer.class, "maxPrice");
+
+    //바깥 쿼리의 orderItem/item 별칭과 겹치지 않도록
+    private static final QOrderItem line = new QOrderItem("line");
+    private static final QItem lineItem = new QItem("lineItem");
+
+    private final EntityManager em;
+    private final Map<Integer, Plan> plans;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public OrderSearchEngine(EntityManager em,
+                             @Value("${jpashop.order-search.plan-cache-size:128}") int planCacheSize) {
+        this.em = em;
+        this.plans = Collections.synchronizedMap(new LinkedHashMap<Integer, Plan>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Plan> eldest) {
+                return size() > planCacheSize;
+            }
+        });
+    }
+
+    /**
+     * 조건에 맞는 주문(회원 fetch join), 최근 주문부터 최대 1000건
+     */
+    public List<Order> search(OrderSearch orderSearch) {
+        Plan plan = plan(orderSearch);
+        TypedQuery<Order> query = em.createQuery(plan.jpql, Order.class).setMaxResults(MAX_RESULTS);
+        JPAUtil.setConstants(query, plan.constants, bind(orderSearch));
+        return query.getResultList();
+    }
+
+    /**
+     * 다른 쿼리(목록 화면 projection, count 등)에 붙일 조건 - 값이 상수로 들어간다
+     */
+    public BooleanBuilder where(OrderSearch orderSearch) {
+        return conditions(orderSearch, false);
+    }
+
+    public long getPlanCacheHits() {
+        return hits.sum();
+    }
+
+    public long getPlanCacheMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("jpashop.order.search.plans", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .description("조건 모양별 jpql 캐시 조회 수")
+                .register(registry);
+        FunctionCounter.builder("jpashop.order.search.plans", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .description("조건 모양별 jpql 캐시 조회 수")
+                .register(registry);
+        Gauge.builder("jpashop.order.search.plans.size", plans, Map::size)
+                .description("캐시된 jpql 수")
+                .register(registry);
+    }
+
+    private Plan plan(OrderSearch orderSearch) {
+        int shape = shape(orderSearch);
+        Plan plan = plans.get(shape);
+        if (plan != null) {
+            hits.increment();
+            return plan;
+        }
+        misses.increment();
+
+        JPQLQuery<Order> query = new JPAQuery<Order>()
+                .select(order)
+                .from(order)
+                .join(order.member, member).fetchJoin()
+                .where(conditions(orderSearch, true))
+                .orderBy(order.id.desc());
+        JPQLSerializer serializer = new JPQLSerializer(HQLTemplates.DEFAULT, em);
+        serializer.serialize(query.getMetadata(), false, null);
+        plan = new Plan(serializer.toString(), new HashMap<>(serializer.getConstantToAllLabels()));
+        plans.put(shape, plan);
+        return plan;
+    }
+
+    /**
+     * 조건 모양 = 값이 있는 조건들 + 회원 이름 검색 방식
+     */
+    private static int shape(OrderSearch s) {
+        int shape = 0;
+        shape |= s.getOrderStatus() != null ? 1 : 0;
+        shape |= s.getOrderDateFrom() != null ? 1 << 1 : 0;
+        shape |= s.getOrderDateTo() != null ? 1 << 2 : 0;
+        shape |= StringUtils.hasText(s.getItemName()) ? 1 << 3 : 0;
+        shape |= s.getMinPrice() != null ? 1 << 4 : 0;
+        shape |= s.getMaxPrice() != null ? 1 << 5 : 0;
+        if (StringUtils.hasText(s.getMemberName())) {
+            shape |= (s.getNameMatch().ordinal() + 1) << 6;
+        }
+        return shape;
+    }
+
+    private static Map<ParamExpression<?>, Object> bind(OrderSearch s) {
+        Map<ParamExpression<?>, Object> values = new HashMap<>();
+        if (s.getOrderStatus() != null) {
+            values.put(STATUS, s.getOrderStatus());
+        }
+        if (StringUtils.hasText(s.getMemberName())) {
+            values.put(MEMBER_NAME, s.getNameMatch().toParameter(s.getMemberName()));
+        }
+        if (s.getOrderDateFrom() != null) {
+            values.put(DATE_FROM, s.getOrderDateFrom().atStartOfDay());
+        }
+        if (s.getOrderDateTo() != null) {
+            values.put(DATE_TO, s.getOrderDateTo().plusDays(1).atStartOfDay());
+        }
+        if (StringUtils.hasText(s.getItemName())) {
+            values.put(ITEM_NAME, itemNameParameter(s));
+        }
+        if (s.getMinPrice() != null) {
+            values.put(MIN_PRICE, s.getMinPrice());
+        }
+        if (s.getMaxPrice() != null) {
+            values.put(MAX_PRICE, s.getMaxPrice());
+        }
+        return values;
+    }
+
+    /**
+     * @param parameterized true 면 값 대신 이름 있는 파라미터(캐시용 jpql), false 면 값을 상수로
+     */
+    private static BooleanBuilder conditions(OrderSearch s, boolean parameterized) {
+        BooleanBuilder where = new BooleanBuilder();
+        if (s.getOrderStatus() != null) {
+            where.and(order.status.eq(value(STATUS, s.getOrderStatus(), parameterized)));
+        }
+        if (StringUtils.hasText(s.getMemberName())) {
+            NameMatch match = s.getNameMatch();
+            Expression<String> name = value(MEMBER_NAME, match.toParameter(s.getMemberName()), parameterized);
+            switch (match) {
+                case EXACT:
+                    where.and(member.name.eq(name));
+                    break;
+                case IGNORE_CASE:
+                    where.and(member.searchName.like(name, NameMatch.ESCAPE));
+                    break;
+                default:
+                    where.and(member.name.like(name, NameMatch.ESCAPE));
+            }
+        }
+        //주문일은 날짜 단위, to 는 그 날 끝까지 포함
+        if (s.getOrderDateFrom() != null) {
+            where.and(order.orderDate.goe(value(DATE_FROM, s.getOrderDateFrom().atStartOfDay(), parameterized)));
+        }
+        if (s.getOrderDateTo() != null) {
+            where.and(order.orderDate.lt(value(DATE_TO, s.getOrderDateTo().plusDays(1).atStartOfDay(), parameterized)));
+        }
+
+        //상품 이름/주문가격은 같은 주문상품 한 줄이 모두 만족해야 한다 (join 대신 exists 라 주문이 중복되지 않는다)
+        BooleanBuilder lineCondition = new BooleanBuilder();
+        if (StringUtils.hasText(s.getItemName())) {
+            lineCondition.and(lineItem.name.lower().like(value(ITEM_NAME, itemNameParameter(s), parameterized), NameMatch.ESCAPE));
+        }
+        if (s.getMinPrice() != null) {
+            lineCondition.and(line.orderPrice.goe(value(MIN_PRICE, s.getMinPrice(), parameterized)));
+        }
+        if (s.getMaxPrice() != null) {
+            lineCondition.and(line.orderPrice.loe(value(MAX_PRICE, s.getMaxPrice(), parameterized)));
+        }
+        if (lineCondition.hasValue()) {
+            where.and(JPAExpressions.selectOne()
+                    .from(line)
+                    .join(line.item, lineItem)
+                    .where(line.order.eq(order), lineCondition)
+                    .exists());
+        }
+        return where;
+    }
+
+    //상품 이름은 대소문자 무시 포함 검색
+    private static String itemNameParameter(OrderSearch s) {
+        return NameMatch.CONTAINS.toParameter(s.getItemName().toLowerCase(Locale.ROOT));
+    }
+
+    private static <T> Expression<T> value(Param<T> param, T value, boolean parameterized) {
+        return parameterized ? param : Expressions.constant(value);
+    }
+
+    private static class Plan {
+        private final String jpql;
+        private final Map<Object, String> constants;  //파라미터 -> jpql 의 라벨
+
+        private Plan(String jpql, Map<Object, String> constants) {
+            this.jpql = jpql;
+            this.constants = constants;
+        }
+    }
+}
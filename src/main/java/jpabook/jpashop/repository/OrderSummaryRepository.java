@@ -0,0 +1,32 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.OrderSummary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface OrderSummaryRepository extends JpaRepository<OrderSummary, Long> {
+
+    /**
+     * count 쿼리 없이 페이지만 조회
+     */
+    List<OrderSummary> findAllBy(Pageable pageable);
+
+    /**
+     * 조회 없이 update 한 번
+     * 영속성 컨텍스트의 OrderSummary 는 갱신되지 않으므로 같은 트랜잭션에서 다시 읽어야 하면 clear 후 조회
+     */
+    @Modifying
+    @Query("update OrderSummary s set s.status = :status where s.orderId in :orderIds")
+    int updateStatus(@Param("orderIds") Collection<Long> orderIds, @Param("status") OrderStatus status);
+
+    @Modifying
+    @Query("update OrderSummary s set s.memberName = :name where s.memberId = :memberId")
+    int updateMemberName(@Param("memberId") Long memberId, @Param("name") String name);
+}
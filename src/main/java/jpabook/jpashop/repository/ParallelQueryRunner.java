@@ -0,0 +1,88 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.monitoring.SqlStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 서로 독립적인 조회 여러 개를 동시에 실행한다 (fan-out)
+ *
+ * 조회마다 전용 스레드에서 각자 읽기 전용 트랜잭션(커넥션)을 열어서 실행한다
+ * 동시에 실행되는 조회 수는 jpashop.fan-out.parallelism 으로 제한하고 (커넥션 풀보다 작게), 큐가 가득 차면 호출한 스레드에서 실행한다
+ *
+ * 호출한 쪽 트랜잭션 밖에서 조회되므로 커밋된 데이터만 보인다 -> DTO 조회 같은 읽기 전용 쿼리에만 사용한다
+ *
+ * 커넥션을 쥔 채 다른 커넥션을 기다리지 않도록 (풀 고갈로 connectionTimeout 까지 멈춤)
+ * - 호출한 쪽에 트랜잭션이 있으면 병렬로 보내지 않고 그 트랜잭션에서 바로 실행한다
+ * - 조회 안에서 InQueryBatchLoader 를 쓰면 이 트랜잭션 안이므로 chunk 도 같은 스레드/커넥션에서 차례로 실행된다 (in-query 풀과 중첩되지 않음)
+ */
+@Component
+public class ParallelQueryRunner {
+
+    private final TransactionTemplate readOnlyTransaction;
+    private final ThreadPoolExecutor executor;
+
+    public ParallelQueryRunner(PlatformTransactionManager transactionManager,
+                               @Value("${jpashop.fan-out.parallelism:3}") int parallelism) {
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(parallelism * 16),
+                r -> {
+                    Thread thread = new Thread(r, "fan-out-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());    //큐가 가득 차면 호출한 스레드에서 실행
+    }
+
+    /**
+     * 조회를 읽기 전용 트랜잭션으로 감싸서 실행 시작, 결과는 get 으로 꺼낸다
+     */
+    public <T> Future<T> submit(Supplier<T> query) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            try {
+                result.complete(query.get());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);    //병렬 실행과 같이 get 에서 던진다
+            }
+            return result;
+        }
+        //호출한 쪽의 SqlStats 범위에 이 조회의 sql 도 집계
+        return executor.submit(SqlStats.propagate(() -> readOnlyTransaction.execute(status -> query.get())));
+    }
+
+    public static <T> T get(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("병렬 조회가 중단되었습니다.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
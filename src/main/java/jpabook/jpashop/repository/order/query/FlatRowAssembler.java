@@ -0,0 +1,71 @@
+package jpabook.jpashop.repository.order.query;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * join 결과(flat row)를 부모 + 자식 컬렉션 모양으로 조립한다
+ *
+ * 쿼리가 부모 키(order_id 등)로 정렬되어 있다는 전제로 한 번만 훑는다
+ * 같은 키가 연속으로 나오니 중간 Map 이나 groupingBy 가 필요 없고 DB 정렬 순서도 그대로 유지된다
+ *
+ * @param <R> flat row
+ * @param <K> 부모 키
+ * @param <P> 부모
+ * @param <C> 자식
+ */
+public class FlatRowAssembler<R, K, P, C> {
+
+    private final Function<R, K> keyOf;
+    private final Function<R, P> parentOf;
+    private final Function<R, C> childOf;
+    private final BiConsumer<P, List<C>> childrenSetter;
+
+    public FlatRowAssembler(Function<R, K> keyOf, Function<R, P> parentOf, Function<R, C> childOf, BiConsumer<P, List<C>> childrenSetter) {
+        this.keyOf = keyOf;
+        this.parentOf = parentOf;
+        this.childOf = childOf;
+        this.childrenSetter = childrenSetter;
+    }
+
+    public List<P> assemble(List<R> rows) {
+        List<P> result = new ArrayList<>();
+        assemble(rows.iterator(), result::add);
+        return result;
+    }
+
+    /**
+     * 부모 하나가 완성될 때마다 sink 로 내보낸다(스트리밍)
+     * 부모는 키가 바뀌는 첫 row 에서 한 번만 만든다
+     */
+    public void assemble(Iterator<R> rows, Consumer<P> sink) {
+        K currentKey = null;
+        P current = null;
+        List<C> children = null;
+
+        while (rows.hasNext()) {
+            R row = rows.next();
+            K key = keyOf.apply(row);
+            if (current == null || !Objects.equals(currentKey, key)) {
+                if (current != null) {
+                    childrenSetter.accept(current, children);
+                    sink.accept(current);
+                }
+                currentKey = key;
+                current = parentOf.apply(row);
+                children = new ArrayList<>();
+            }
+            children.add(childOf.apply(row));
+        }
+
+        if (current != null) {
+            childrenSetter.accept(current, children);
+            sink.accept(current);
+        }
+    }
+}
@@ -1,18 +1,42 @@
 package jpabook.jpashop.repository.order.query;
 
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.InQueryBatchLoader;
+import jpabook.jpashop.repository.ParallelQueryRunner;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Repository
 @RequiredArgsConstructor
 public class OrderQueryRepository {
 
+    //flat row -> OrderQueryDto(orderItems) 조립기, 쿼리는 o.id 로 정렬되어 있어야 한다
+    public static final FlatRowAssembler<OrderFlatDto, Long, OrderQueryDto, OrderItemQueryDto> ORDER_ASSEMBLER =
+            new FlatRowAssembler<>(
+                    OrderFlatDto::getOrderId,
+                    o -> new OrderQueryDto(o.getOrderId(), o.getName(), o.getOrderDate(), o.getOrderStatus(), o.getAddress()),
+                    o -> new OrderItemQueryDto(o.getOrderId(), o.getItemName(), o.getOrderPrice(), o.getCount()),
+                    OrderQueryDto::setOrderItems);
+
     private final EntityManager em;
+    private final InQueryBatchLoader inQueryBatchLoader;
+    private final ParallelQueryRunner parallelQueryRunner;
 
 
     public List<OrderQueryDto> findOrderQueryDtos() {
@@ -38,18 +62,82 @@ public class OrderQueryRepository {
 
     }
 
+    /**
+     * 주문 id 를 먼저 페이징해서 조회한 뒤 주문상품 / 상품 이름 / 배송지를 각자 커넥션에서 동시에 조회해서 합친다
+     * 응답 시간이 세 조회의 합이 아니라 가장 느린 조회 + 주문 조회가 된다
+     * 호출한 쪽 트랜잭션 밖에서 조회하므로 트랜잭션 없이 호출한다 (트랜잭션 안에서 부르면 차례로 실행된다)
+     * 조회마다 커넥션 하나만 쓴다 - IN chunk 는 조회 트랜잭션 안에서 차례로 실행 (InQueryBatchLoader)
+     */
+    public List<OrderQueryDto> findAllByDto_parallel(int offset, int limit) {
+        List<OrderQueryDto> result = em.createQuery(
+                "select new jpabook.jpashop.repository.order.query.OrderQueryDto(o.id, m.name, o.orderDate, o.status)" +
+                        " from Order o" +
+                        " join o.member m" +
+                        " order by o.id", OrderQueryDto.class)
+                .setFirstResult(offset)
+                .setMaxResults(limit)
+                .getResultList();
+        if (result.isEmpty()) {
+            return result;
+        }
+        List<Long> orderIds = toOrderIds(result);
+
+        //row = [orderId, itemId, orderPrice, count]
+        Future<List<Object[]>> orderItems = parallelQueryRunner.submit(() -> inQueryBatchLoader.load(orderIds, ids -> em.createQuery(
+                "select oi.order.id, oi.item.id, oi.orderPrice, oi.count" +
+                        " from OrderItem oi" +
+                        " where oi.order.id in :orderIds" +
+                        " order by oi.id", Object[].class)
+                .setParameter("orderIds", ids)
+                .getResultList()));
+        //row = [itemId, itemName]
+        Future<List<Object[]>> items = parallelQueryRunner.submit(() -> inQueryBatchLoader.load(orderIds, ids -> em.createQuery(
+                "select i.id, i.name" +
+                        " from Item i" +
+                        " where i.id in (select oi.item.id from OrderItem oi where oi.order.id in :orderIds)", Object[].class)
+                .setParameter("orderIds", ids)
+                .getResultList()));
+        //row = [orderId, address]
+        Future<List<Object[]>> deliveries = parallelQueryRunner.submit(() -> inQueryBatchLoader.load(orderIds, ids -> em.createQuery(
+                "select o.id, d.address" +
+                        " from Order o" +
+                        " join o.delivery d" +
+                        " where o.id in :orderIds", Object[].class)
+                .setParameter("orderIds", ids)
+                .getResultList()));
+
+        Map<Long, String> itemNames = new HashMap<>();
+        for (Object[] row : ParallelQueryRunner.get(items)) {
+            itemNames.put((Long) row[0], (String) row[1]);
+        }
+        Map<Long, List<OrderItemQueryDto>> orderItemMap = new HashMap<>();
+        for (Object[] row : ParallelQueryRunner.get(orderItems)) {
+            Long orderId = (Long) row[0];
+            orderItemMap.computeIfAbsent(orderId, id -> new ArrayList<>())
+                    .add(new OrderItemQueryDto(orderId, itemNames.get((Long) row[1]), (Integer) row[2], (Integer) row[3]));
+        }
+        Map<Long, Address> addressMap = new HashMap<>();
+        for (Object[] row : ParallelQueryRunner.get(deliveries)) {
+            addressMap.put((Long) row[0], (Address) row[1]);
+        }
+
+        result.forEach(o -> {
+            o.setOrderItems(orderItemMap.getOrDefault(o.getOrderId(), Collections.emptyList()));
+            o.setAddress(addressMap.get(o.getOrderId()));
+        });
+        return result;
+    }
+
     private Map<Long, List<OrderItemQueryDto>> findOrderItemMap(List<Long> orderIds) {
-        List<OrderItemQueryDto> orderItems = em.createQuery(//쿼리 1번!!
+        //주문 id 가 많으면 2의 거듭제곱 크기 chunk 로 나눠서 병렬 조회 (chunk 하나면 쿼리 1번!!)
+        //Collectors.groupingBy를 사용하면 조회된 dto 리스트 데이터를 키가 orderId이고 value가 dto인 map 으로 바꿀 수 있음
+        return inQueryBatchLoader.loadGrouped(orderIds, ids -> em.createQuery(
                 "select new jpabook.jpashop.repository.order.query.OrderItemQueryDto(oi.order.id, i.name, oi.orderPrice, oi.count)" +
                         " from OrderItem oi" +
                         " join oi.item i" +
                         " where oi.order.id in :orderIds", OrderItemQueryDto.class)
-                .setParameter("orderIds", orderIds)
-                .getResultList();
-
-        //Collectors.groupingBy를 사용하면 조회된 dto 리스트 데이터를 키가 orderId이고 value가 dto인 map 으로 바꿀 수 있음
-        Map<Long, List<OrderItemQueryDto>> orderItemMap = orderItems.stream().collect(Collectors.groupingBy(OrderItemQueryDto::getOrderId));
-        return orderItemMap;
+                .setParameter("orderIds", ids)
+                .getResultList(), OrderItemQueryDto::getOrderId);
     }
 
     private List<Long> toOrderIds(List<OrderQueryDto> result) {
@@ -83,8 +171,85 @@ public class OrderQueryRepository {
                         " join o.member m" +
                         " join o.delivery d" +
                         " join o.orderItems oi" +
-                        " join oi.item i", OrderFlatDto.class)
+                        " join oi.item i" +
+                        " order by o.id", OrderFlatDto.class)   //ORDER_ASSEMBLER 가 order 단위로 묶을 수 있도록 정렬
                 .getResultList();
 
     }
+
+    //order 기준 페이징 - order id 만 먼저 페이징해서 가져오고 해당 주문들만 flat 으로 조회해서 조립 (쿼리 2번)
+    public List<OrderQueryDto> findAllByDto_flat(int offset, int limit) {
+        List<Long> orderIds = em.createQuery("select o.id from Order o order by o.id", Long.class)
+                .setFirstResult(offset)
+                .setMaxResults(limit)
+                .getResultList();
+        if (orderIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<OrderFlatDto> flats = em.createQuery(
+                "select new jpabook.jpashop.repository.order.query.OrderFlatDto(o.id, m.name, o.orderDate, o.status, d.address, i.name, oi.orderPrice, oi.count)" +
+                        " from Order o" +
+                        " join o.member m" +
+                        " join o.delivery d" +
+                        " join o.orderItems oi" +
+                        " join oi.item i" +
+                        " where o.id in :orderIds" +
+                        " order by o.id", OrderFlatDto.class)
+                .setParameter("orderIds", orderIds)
+                .getResultList();
+
+        return ORDER_ASSEMBLER.assemble(flats);
+    }
+
+    //export 용 - 결과를 List 로 올리지 않고 forward-only 커서로 한 row 씩 consumer 에 흘려보낸다
+    //fetchSize 만큼씩 드라이버가 가져오고, DTO 라 영속성 컨텍스트에 엔티티가 쌓이지 않아서 힙 사용량이 데이터 크기와 무관하다
+    //트랜잭션(커넥션)이 열려있는 동안에만 호출 가능
+    public void streamAllByDto_flat(int fetchSize, Consumer<OrderFlatDto> consumer) {
+        Session session = em.unwrap(Session.class);
+        try (ScrollableResults results = session.createQuery(
+                "select new jpabook.jpashop.repository.order.query.OrderFlatDto(o.id, m.name, o.orderDate, o.status, d.address, i.name, oi.orderPrice, oi.count)" +
+                        " from Order o" +
+                        " join o.member m" +
+                        " join o.delivery d" +
+                        " join o.orderItems oi" +
+                        " join oi.item i" +
+                        " order by o.id", OrderFlatDto.class)
+                .setFetchSize(fetchSize)
+                .setReadOnly(true)
+                .setCacheMode(CacheMode.IGNORE)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                consumer.accept((OrderFlatDto) results.get(0));
+            }
+        }
+    }
+
+    //회원별 주문 합계 - orders.total_price 컬럼만 합산하므로 order_item 을 읽지 않는다 (취소 주문 제외)
+    public List<OrderTotalByMemberDto> findTotalsByMember() {
+        return em.createQuery(
+                "select new jpabook.jpashop.repository.order.query.OrderTotalByMemberDto(m.id, m.name, count(o), sum(o.totalPrice))" +
+                        " from Order o" +
+                        " join o.member m" +
+                        " where o.status = :status" +
+                        " group by m.id, m.name" +
+                        " order by m.id", OrderTotalByMemberDto.class)
+                .setParameter("status", OrderStatus.ORDER)
+                .getResultList();
+    }
+
+    //일별 주문 합계 [from, to] (취소 주문 제외)
+    public List<OrderTotalByDayDto> findTotalsByDay(LocalDate from, LocalDate to) {
+        return em.createQuery(
+                "select new jpabook.jpashop.repository.order.query.OrderTotalByDayDto(cast(o.orderDate as date), count(o), sum(o.totalPrice))" +
+                        " from Order o" +
+                        " where o.status = :status" +
+                        " and o.orderDate >= :from and o.orderDate < :to" +
+                        " group by cast(o.orderDate as date)" +
+                        " order by cast(o.orderDate as date)", OrderTotalByDayDto.class)
+                .setParameter("status", OrderStatus.ORDER)
+                .setParameter("from", from.atStartOfDay())
+                .setParameter("to", to.plusDays(1).atStartOfDay())
+                .getResultList();
+    }
 }
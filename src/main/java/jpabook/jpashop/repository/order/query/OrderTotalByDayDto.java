@@ -0,0 +1,20 @@
+package jpabook.jpashop.repository.order.query;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.Date;
+
+@Data
+public class OrderTotalByDayDto {
+
+    private LocalDate day;
+    private long orderCount;
+    private long totalPrice;
+
+    public OrderTotalByDayDto(Date day, Long orderCount, Long totalPrice) {
+        this.day = new java.sql.Date(day.getTime()).toLocalDate();  //cast(.. as date) 는 java.sql.Date 로 넘어온다
+        this.orderCount = orderCount;
+        this.totalPrice = totalPrice == null ? 0 : totalPrice;
+    }
+}
@@ -0,0 +1,19 @@
+package jpabook.jpashop.repository.order.query;
+
+import lombok.Data;
+
+@Data
+public class OrderTotalByMemberDto {
+
+    private Long memberId;
+    private String name;
+    private long orderCount;
+    private long totalPrice;
+
+    public OrderTotalByMemberDto(Long memberId, String name, Long orderCount, Long totalPrice) {
+        this.memberId = memberId;
+        this.name = name;
+        this.orderCount = orderCount;
+        this.totalPrice = totalPrice == null ? 0 : totalPrice;
+    }
+}
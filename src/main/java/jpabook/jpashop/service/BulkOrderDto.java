@@ -0,0 +1,30 @@
+package jpabook.jpashop.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 대량 주문 한 건 (회원 한 명 + 주문 상품 여러 개)
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkOrderDto {
+    private Long memberId;
+    private List<OrderLineDto> orderItems = new ArrayList<>();
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class OrderLineDto {
+        private Long itemId;
+        private int count;
+    }
+}
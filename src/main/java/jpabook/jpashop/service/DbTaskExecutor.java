@@ -0,0 +1,123 @@
+package jpabook.jpashop.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jpabook.jpashop.exception.TooManyRequestsException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * db 조회 전용 스레드 풀 - 비동기 api 가 요청 스레드(tomcat) 대신 여기서 repository/service 를 실행한다
+ *
+ * 스레드 수 = 커넥션 풀 크기 - reserved-connections (동기 api, IN 절 병렬 조회 몫으로 남겨둔다)
+ * 스레드가 커넥션보다 많으면 남는 스레드는 커넥션을 기다리기만 하므로 풀 크기에 맞춘다
+ * 큐가 가득 차면 기다리게 하지 않고 바로 TooManyRequestsException(429) 으로 거절한다
+ *
+ * 메트릭
+ * - executor.* (name = db) : 스레드/큐 상태 (micrometer ExecutorServiceMetrics)
+ * - jpashop.db.executor.queued : endpoint 별 큐에서 대기 중인 작업 수
+ * - jpashop.db.executor.wait : endpoint 별 큐 대기 시간
+ * - jpashop.db.executor.rejected : endpoint 별 거절 수
+ */
+@Slf4j
+@Component
+public class DbTaskExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AtomicInteger> queued = new ConcurrentHashMap<>();
+
+    public DbTaskExecutor(DataSource dataSource,
+                          @Value("${jpashop.db-executor.reserved-connections:2}") int reservedConnections,
+                          @Value("${jpashop.db-executor.queue-capacity:100}") int queueCapacity,
+                          MeterRegistry meterRegistry) {
+        int poolSize = maximumPoolSize(dataSource);
+        int threads = Math.max(1, poolSize - reservedConnections);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "db-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.meterRegistry = meterRegistry;
+        new ExecutorServiceMetrics(executor, "db", Collections.emptyList()).bindTo(meterRegistry);
+        log.info("db executor 생성. connectionPool={}, threads={}, queueCapacity={}", poolSize, threads, queueCapacity);
+    }
+
+    /**
+     * work 를 db 스레드에서 실행
+     * @param endpoint 메트릭 태그 (ex. GET /api/v3/orders/async)
+     * @throws TooManyRequestsException 큐가 가득 찬 경우
+     */
+    public <T> CompletableFuture<T> supply(String endpoint, Supplier<T> work) {
+        AtomicInteger depth = queuedOf(endpoint);
+        Timer waitTimer = meterRegistry.timer("jpashop.db.executor.wait", "endpoint", endpoint);
+        long enqueuedAt = System.nanoTime();
+
+        depth.incrementAndGet();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                depth.decrementAndGet();
+                waitTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+                return work.get();
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            depth.decrementAndGet();
+            meterRegistry.counter("jpashop.db.executor.rejected", "endpoint", endpoint).increment();
+            throw new TooManyRequestsException("요청이 많아 처리할 수 없습니다. 잠시 후 다시 시도해 주세요.", e);
+        }
+    }
+
+    public int getThreads() {
+        return executor.getMaximumPoolSize();
+    }
+
+    private AtomicInteger queuedOf(String endpoint) {
+        return queued.computeIfAbsent(endpoint, key -> {
+            AtomicInteger depth = new AtomicInteger();
+            Gauge.builder("jpashop.db.executor.queued", depth, AtomicInteger::get)
+                    .tag("endpoint", key)
+                    .description("큐에서 대기 중인 작업 수")
+                    .register(meterRegistry);
+            return depth;
+        });
+    }
+
+    //p6spy 등으로 감싸져 있어도 unwrap 해서 hikari 설정을 읽는다
+    private static int maximumPoolSize(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            }
+        } catch (SQLException e) {
+            log.debug("커넥션 풀 크기 조회 실패", e);
+        }
+        return 10;  //hikari 기본값
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
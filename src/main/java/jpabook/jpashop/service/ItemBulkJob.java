@@ -0,0 +1,103 @@
+package jpabook.jpashop.service;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 상품 대량 작업(가격 변경, 재고 import) 진행 상황 - chunk 가 커밋될 때마다 갱신된다
+ */
+@Getter
+public class ItemBulkJob {
+
+    public enum Type { PRICE_CHANGE, STOCK_IMPORT }
+
+    public enum Status { RUNNING, COMPLETED, FAILED }
+
+    private static final int MAX_ERRORS = 100;
+
+    private final String id = UUID.randomUUID().toString();
+    private final Type type;
+    private final String description;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private volatile LocalDateTime finishedAt;
+    private volatile Status status = Status.RUNNING;
+    private volatile long total = -1;       //전체 건수, 모르면 -1 (csv)
+    private volatile String failure;
+    private volatile Long lastCommittedId;  //가격 변경 : 마지막으로 커밋된 chunk 의 마지막 상품 id (이어서 실행할 때 afterId)
+
+    @Getter(lombok.AccessLevel.NONE)
+    private final AtomicLong processed = new AtomicLong();  //읽은 건수(커밋된 chunk 까지)
+    @Getter(lombok.AccessLevel.NONE)
+    private final AtomicLong updated = new AtomicLong();    //실제 바뀐 상품 수
+    @Getter(lombok.AccessLevel.NONE)
+    private final AtomicLong skipped = new AtomicLong();    //없는 상품, 잘못된 줄
+    @Getter(lombok.AccessLevel.NONE)
+    private final List<String> errors = new ArrayList<>();  //앞에서부터 MAX_ERRORS 건
+
+    ItemBulkJob(Type type, String description) {
+        this.type = type;
+        this.description = description;
+    }
+
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    public long getUpdated() {
+        return updated.get();
+    }
+
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    public List<String> getErrors() {
+        synchronized (errors) {
+            return new ArrayList<>(errors);
+        }
+    }
+
+    public long getElapsedMs() {
+        LocalDateTime end = finishedAt == null ? LocalDateTime.now() : finishedAt;
+        return Duration.between(startedAt, end).toMillis();
+    }
+
+    void setTotal(long total) {
+        this.total = total;
+    }
+
+    void setLastCommittedId(Long lastCommittedId) {
+        this.lastCommittedId = lastCommittedId;
+    }
+
+    void chunkDone(long processed, long updated) {
+        this.processed.addAndGet(processed);
+        this.updated.addAndGet(updated);
+        this.skipped.addAndGet(processed - updated);
+    }
+
+    void error(String error) {
+        synchronized (errors) {
+            if (errors.size() < MAX_ERRORS) {
+                errors.add(error);
+            }
+        }
+    }
+
+    void complete() {
+        finishedAt = LocalDateTime.now();
+        status = Status.COMPLETED;
+    }
+
+    void fail(Exception e) {
+        failure = e.getMessage();
+        finishedAt = LocalDateTime.now();
+        status = Status.FAILED;
+    }
+}
@@ -0,0 +1,309 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.exception.BadRequestException;
+import jpabook.jpashop.exception.TooManyRequestsException;
+import jpabook.jpashop.repository.ItemRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 상품 대량 작업 - 상품마다 조회 + 변경 감지 update 를 하지 않고 chunk 단위 set 기반 update 로 처리한다
+ *
+ * - 카테고리 가격 변경 : chunk 마다 update versioned Item ... where id in (...) 한 번 (벌크 jpql)
+ * - 재고 import(csv) : chunk 마다 update item set stock_quantity = ? ... jdbc batch 한 번
+ *
+ * chunk 는 각자 새 트랜잭션(REQUIRES_NEW, 새 영속성 컨텍스트)에서 커밋되므로 진행 상황은 커밋된 chunk 까지이고,
+ * 중간에 실패하면 앞의 chunk 는 반영된 채로 남는다
+ * - 재고 import 는 값을 그대로 덮어쓰므로 같은 파일로 다시 실행해도 된다
+ * - 가격 변경은 비율이라 다시 실행하면 커밋된 chunk 에 한 번 더 적용된다 -> 처음부터 다시 실행하지 말고
+ *   job 의 lastCommittedId 를 afterId 로 넘겨서 그 다음 상품부터 이어서 실행한다
+ * 커밋 후 2차 캐시, 재고 예약 카운터, 검색 인덱스를 바뀐 값으로 맞추고, version 을 올려 진행 중인 변경 감지 수정은 낙관적 락으로 충돌시킨다
+ *
+ * submit* 은 전용 스레드 하나에서 차례로 실행하고 진행 상황은 findJob 으로 본다 (최근 job-history 건만 보관)
+ */
+@Slf4j
+@Service
+public class ItemBulkService {
+
+    private static final String UPDATE_STOCK =
+            "update item set stock_quantity = ?, version = version + 1 where item_id = ?";
+
+    private final ItemRepository itemRepository;
+    private final StockReservationEngine stockReservationEngine;
+    private final ItemSearchIndex itemSearchIndex;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory emf;
+    private final TransactionTemplate chunkTransaction;
+    private final int chunkSize;
+    private final Map<String, ItemBulkJob> jobs;
+    private final ThreadPoolExecutor executor;
+
+    public ItemBulkService(ItemRepository itemRepository,
+                           StockReservationEngine stockReservationEngine,
+                           ItemSearchIndex itemSearchIndex,
+                           JdbcTemplate jdbcTemplate,
+                           EntityManagerFactory emf,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${jpashop.item-bulk.chunk-size:1000}") int chunkSize,
+                           @Value("${jpashop.item-bulk.job-history:100}") int jobHistory,
+                           @Value("${jpashop.item-bulk.queue-capacity:10}") int queueCapacity) {
+        this.itemRepository = itemRepository;
+        this.stockReservationEngine = stockReservationEngine;
+        this.itemSearchIndex = itemSearchIndex;
+        this.jdbcTemplate = jdbcTemplate;
+        this.emf = emf;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.chunkSize = chunkSize;
+        this.jobs = Collections.synchronizedMap(new LinkedHashMap<String, ItemBulkJob>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ItemBulkJob> eldest) {
+                return size() > jobHistory;
+            }
+        });
+        //같은 상품을 건드리는 대량 작업끼리 경합하지 않도록 한 번에 하나씩
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "item-bulk");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    public ItemBulkJob findJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * 카테고리에 속한 상품 가격을 percent 만큼 변경 (10 이면 10% 인상, -10 이면 10% 인하, 원 단위 반올림)
+     */
+    public ItemBulkJob changePriceByCategory(Long categoryId, int percent) {
+        return changePriceByCategory(categoryId, percent, null);
+    }
+
+    /**
+     * @param afterId 실패한 가격 변경을 이어서 실행할 때 그 job 의 lastCommittedId, 이 id 다음 상품부터 변경한다 (처음이면 null)
+     */
+    public ItemBulkJob changePriceByCategory(Long categoryId, int percent, Long afterId) {
+        ItemBulkJob job = newPriceChangeJob(categoryId, percent, afterId);
+        run(job, () -> changePrice(job, categoryId, percent, afterId));
+        return job;
+    }
+
+    public ItemBulkJob submitPriceChange(Long categoryId, int percent, Long afterId) {
+        ItemBulkJob job = newPriceChangeJob(categoryId, percent, afterId);
+        submit(job, () -> changePrice(job, categoryId, percent, afterId));
+        return job;
+    }
+
+    /**
+     * 재고 import - csv 한 줄에 "상품 id,재고 수량", 재고를 그 값으로 바꾼다
+     * 첫 줄이 숫자가 아니면 헤더로 보고 건너뛰고, 없는 상품/잘못된 줄은 skipped 와 errors 에 남긴다
+     */
+    public ItemBulkJob importStock(Reader csv) {
+        ItemBulkJob job = register(new ItemBulkJob(ItemBulkJob.Type.STOCK_IMPORT, "csv"));
+        run(job, () -> importStock(job, csv));
+        return job;
+    }
+
+    /**
+     * 업로드된 csv 파일로 재고 import, 작업이 끝나면 파일을 지운다
+     */
+    public ItemBulkJob submitStockImport(Path csv) {
+        ItemBulkJob job = register(new ItemBulkJob(ItemBulkJob.Type.STOCK_IMPORT, csv.getFileName().toString()));
+        try {
+            submit(job, () -> {
+                try (Reader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+                    importStock(job, reader);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    deleteQuietly(csv);
+                }
+            });
+        } catch (RuntimeException e) {
+            deleteQuietly(csv);     //거절되면 작업이 실행되지 않으니 여기서 지운다
+            throw e;
+        }
+        return job;
+    }
+
+    private ItemBulkJob newPriceChangeJob(Long categoryId, int percent, Long afterId) {
+        if (percent <= -100 || percent > 1000) {
+            throw new BadRequestException("가격 변경률은 -100 보다 크고 1000 이하여야 합니다.");
+        }
+        Integer maxPrice = itemRepository.findMaxPriceByCategory(categoryId);
+        if (maxPrice != null && newPrice(maxPrice, percent) > Integer.MAX_VALUE) {
+            throw new BadRequestException("변경 후 가격이 너무 큽니다. 최고 가격=" + maxPrice + ", percent=" + percent);
+        }
+        return register(new ItemBulkJob(ItemBulkJob.Type.PRICE_CHANGE,
+                "categoryId=" + categoryId + ", percent=" + percent + (afterId == null ? "" : ", afterId=" + afterId)));
+    }
+
+    //ItemRepository.bulkUpdatePrice 와 같은 계산
+    static long newPrice(int price, int percent) {
+        return ((long) price * (100 + percent) + 50) / 100;
+    }
+
+    private void changePrice(ItemBulkJob job, Long categoryId, int percent, Long afterId) {
+        Long lastId = afterId == null ? 0L : afterId;
+        job.setTotal(itemRepository.countByCategory(categoryId, lastId));
+        while (true) {
+            List<Long> ids = itemRepository.findIdsByCategory(categoryId, lastId, chunkSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            int updated = chunkTransaction.execute(status -> {
+                int count = itemRepository.bulkUpdatePrice(ids, percent);
+                //검색 결과에 가격이 나가므로 바뀐 값으로 다시 색인 (커밋 후 반영)
+                for (Item item : itemRepository.findAllByIdFromDb(ids)) {
+                    itemSearchIndex.index(item);
+                }
+                return count;
+            });
+            lastId = ids.get(ids.size() - 1);
+            job.chunkDone(ids.size(), updated);
+            job.setLastCommittedId(lastId);
+            log.debug("가격 변경 진행. job={}, processed={}/{}", job.getId(), job.getProcessed(), job.getTotal());
+        }
+    }
+
+    private void importStock(ItemBulkJob job, Reader csv) {
+        BufferedReader reader = csv instanceof BufferedReader ? (BufferedReader) csv : new BufferedReader(csv);
+        List<Object[]> rows = new ArrayList<>(chunkSize);
+        int lineNumber = 0;
+        int invalid = 0;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                String[] columns = line.split(",");
+                try {
+                    if (columns.length != 2) {
+                        throw new NumberFormatException();
+                    }
+                    long itemId = Long.parseLong(columns[0].trim());
+                    int stockQuantity = Integer.parseInt(columns[1].trim());
+                    if (stockQuantity < 0) {
+                        throw new NumberFormatException();
+                    }
+                    rows.add(new Object[]{stockQuantity, itemId});
+                } catch (NumberFormatException e) {
+                    if (lineNumber == 1) {
+                        continue;   //헤더
+                    }
+                    job.error("line " + lineNumber + ": 잘못된 형식 '" + line + "'");
+                    invalid++;
+                }
+                if (rows.size() + invalid >= chunkSize) {
+                    updateStock(job, rows, invalid);
+                    rows = new ArrayList<>(chunkSize);
+                    invalid = 0;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        updateStock(job, rows, invalid);
+    }
+
+    private void updateStock(ItemBulkJob job, List<Object[]> rows, int invalid) {
+        List<Long> updatedIds = new ArrayList<>();
+        if (!rows.isEmpty()) {
+            chunkTransaction.executeWithoutResult(status -> {
+                int[] counts = jdbcTemplate.batchUpdate(UPDATE_STOCK, rows);
+                for (int i = 0; i < counts.length; i++) {
+                    Long itemId = (Long) rows.get(i)[1];
+                    if (counts[i] == 0) {
+                        job.error("itemId=" + itemId + ": 상품이 없습니다.");
+                        continue;
+                    }
+                    updatedIds.add(itemId);
+                }
+                //jdbc 로 바꿨으니 hibernate 가 모른다, 커밋 직후 바뀐 상품만 2차 캐시에서 제거
+                //afterCommit 은 예약 카운터를 버리는 afterCompletion(evict) 보다 먼저 실행되므로 카운터를 새 재고로 다시 읽을 때 예전 재고가 보이지 않는다
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCommit() {
+                        updatedIds.forEach(itemId -> emf.getCache().evict(Item.class, itemId));
+                    }
+                });
+                updatedIds.forEach(stockReservationEngine::evict);
+            });
+        }
+        job.chunkDone(rows.size() + invalid, updatedIds.size());
+        log.debug("재고 import 진행. job={}, processed={}", job.getId(), job.getProcessed());
+    }
+
+    private ItemBulkJob register(ItemBulkJob job) {
+        jobs.put(job.getId(), job);
+        return job;
+    }
+
+    private void submit(ItemBulkJob job, Runnable task) {
+        try {
+            executor.execute(() -> run(job, task));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw new TooManyRequestsException("진행 중인 대량 작업이 많습니다. 잠시 후 다시 시도해 주세요.", e);
+        }
+    }
+
+    private void run(ItemBulkJob job, Runnable task) {
+        log.info("상품 대량 작업 시작. job={}, type={}, {}", job.getId(), job.getType(), job.getDescription());
+        try {
+            task.run();
+            job.complete();
+            log.info("상품 대량 작업 완료. job={}, processed={}, updated={}, skipped={}, {}ms",
+                    job.getId(), job.getProcessed(), job.getUpdated(), job.getSkipped(), job.getElapsedMs());
+        } catch (RuntimeException e) {
+            job.fail(e);
+            log.error("상품 대량 작업 실패. job={}, processed={}, lastCommittedId={}",
+                    job.getId(), job.getProcessed(), job.getLastCommittedId(), e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("임시 파일 삭제 실패. {}", path, e);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.item.Album;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.domain.item.Movie;
+import jpabook.jpashop.repository.ItemRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 상품 검색용 메모리 역색인
+ *
+ * 상품명, Book 저자/isbn, Album 아티스트, Movie 감독/배우를 토큰으로 나눠서 token -> (itemId -> 가중치) 로 저장한다
+ * token 은 정렬된 ConcurrentSkipListMap 에 있어서 prefix 검색은 subMap 범위 조회 한 번이다
+ *
+ * 1. 애플리케이션 시작 시 전체 상품으로 만든다
+ * 2. ItemService.saveItem / updateItem 에서 커밋 후 해당 상품만 다시 색인한다
+ * 3. 검색은 db 를 읽지 않는다
+ */
+@Slf4j
+@Component
+public class ItemSearchIndex {
+
+    //필드 가중치 - 상품명 매칭을 가장 높게
+    static final double NAME_WEIGHT = 3.0;
+    static final double CREATOR_WEIGHT = 2.0;  //저자, 아티스트, 감독
+    static final double ACTOR_WEIGHT = 1.5;
+    static final double ISBN_WEIGHT = 1.0;
+    //prefix 로만 일치하면 가중치를 깎는다
+    static final double PREFIX_FACTOR = 0.5;
+
+    private final ItemRepository itemRepository;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final ConcurrentSkipListMap<String, Map<Long, Double>> postings = new ConcurrentSkipListMap<>();
+    private final Map<Long, Doc> docs = new ConcurrentHashMap<>();
+
+    public ItemSearchIndex(ItemRepository itemRepository, PlatformTransactionManager transactionManager) {
+        this.itemRepository = itemRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * 전체 상품으로 다시 만든다
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<Doc> all = readOnlyTransaction.execute(status -> {
+            List<Doc> result = new ArrayList<>();
+            for (Item item : itemRepository.findAll()) {
+                result.add(toDoc(item));
+            }
+            return result;
+        });
+        synchronized (this) {
+            postings.clear();
+            docs.clear();
+            all.forEach(this::put);
+        }
+        log.info("상품 검색 인덱스 생성. items={}, tokens={}", docs.size(), postings.size());
+    }
+
+    /**
+     * 상품 색인(추가/수정), 값은 호출 시점에 읽고 트랜잭션이 커밋된 경우에만 반영한다
+     */
+    public void index(Item item) {
+        Doc doc = toDoc(item);
+        afterCommit(() -> {
+            synchronized (this) {
+                remove(doc.id);
+                put(doc);
+            }
+        });
+    }
+
+    /**
+     * 상품 제거
+     */
+    public void delete(Long itemId) {
+        afterCommit(() -> {
+            synchronized (this) {
+                remove(itemId);
+            }
+        });
+    }
+
+    public int size() {
+        return docs.size();
+    }
+
+    /**
+     * 검색어의 모든 토큰과 일치(prefix 포함)하는 상품을 점수 순으로 limit 개
+     * 점수 = 검색 토큰마다 가장 잘 맞은 필드 가중치의 합
+     */
+    public List<ItemSearchResult> search(String query, int limit) {
+        Set<String> queryTokens = tokenize(query);
+        if (queryTokens.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        Map<Long, Double> scores = null;
+        for (String queryToken : queryTokens) {
+            Map<Long, Double> tokenScores = new HashMap<>();
+            ConcurrentNavigableMap<String, Map<Long, Double>> matches =
+                    postings.subMap(queryToken, true, queryToken + Character.MAX_VALUE, true);
+            matches.forEach((token, weights) -> {
+                double factor = token.equals(queryToken) ? 1.0 : PREFIX_FACTOR;
+                weights.forEach((itemId, weight) -> tokenScores.merge(itemId, weight * factor, Math::max));
+            });
+
+            if (scores == null) {
+                scores = tokenScores;
+            } else {
+                //AND 검색 - 앞 토큰과 모두 일치한 상품만 남긴다
+                Map<Long, Double> merged = new HashMap<>();
+                for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                    Double score = tokenScores.get(entry.getKey());
+                    if (score != null) {
+                        merged.put(entry.getKey(), entry.getValue() + score);
+                    }
+                }
+                scores = merged;
+            }
+            if (scores.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+
+        //top-k 는 크기 limit 인 min heap 으로 (전체 정렬 없이)
+        Comparator<Map.Entry<Long, Double>> order = Map.Entry.<Long, Double>comparingByValue()
+                .thenComparing(Map.Entry.<Long, Double>comparingByKey().reversed());
+        PriorityQueue<Map.Entry<Long, Double>> heap = new PriorityQueue<>(limit + 1, order);
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            heap.offer(entry);
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+
+        List<ItemSearchResult> result = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            Map.Entry<Long, Double> entry = heap.poll();
+            Doc doc = docs.get(entry.getKey());
+            if (doc != null) {
+                result.add(new ItemSearchResult(doc.id, doc.name, doc.price, entry.getValue()));
+            }
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * 소문자로 바꾸고 글자/숫자가 아닌 문자로 나눈다 (한글도 글자로 취급)
+     */
+    static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null) {
+            return tokens;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (char c : text.toLowerCase(Locale.ROOT).toCharArray()) {
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(c);
+            } else if (sb.length() > 0) {
+                tokens.add(sb.toString());
+                sb.setLength(0);
+            }
+        }
+        if (sb.length() > 0) {
+            tokens.add(sb.toString());
+        }
+        return tokens;
+    }
+
+    private Doc toDoc(Item item) {
+        Map<String, Double> terms = new HashMap<>();
+        addTerms(terms, item.getName(), NAME_WEIGHT);
+        if (item instanceof Book) {
+            Book book = (Book) item;
+            addTerms(terms, book.getAuthor(), CREATOR_WEIGHT);
+            if (book.getIsbn() != null) {
+                //isbn 은 하이픈을 빼고 한 토큰으로
+                addTerms(terms, book.getIsbn().replaceAll("[^0-9A-Za-z]", ""), ISBN_WEIGHT);
+            }
+        } else if (item instanceof Album) {
+            addTerms(terms, ((Album) item).getArtist(), CREATOR_WEIGHT);
+        } else if (item instanceof Movie) {
+            Movie movie = (Movie) item;
+            addTerms(terms, movie.getDirector(), CREATOR_WEIGHT);
+            addTerms(terms, movie.getActor(), ACTOR_WEIGHT);
+        }
+        return new Doc(item.getId(), item.getName(), item.getPrice(), terms);
+    }
+
+    private void addTerms(Map<String, Double> terms, String text, double weight) {
+        for (String token : tokenize(text)) {
+            terms.merge(token, weight, Math::max);
+        }
+    }
+
+    //호출하는 쪽에서 synchronized
+    private void put(Doc doc) {
+        docs.put(doc.id, doc);
+        doc.terms.forEach((token, weight) ->
+                postings.computeIfAbsent(token, t -> new ConcurrentHashMap<>()).put(doc.id, weight));
+    }
+
+    private void remove(Long itemId) {
+        Doc old = docs.remove(itemId);
+        if (old == null) {
+            return;
+        }
+        old.terms.keySet().forEach(token -> postings.computeIfPresent(token, (t, weights) -> {
+            weights.remove(itemId);
+            return weights.isEmpty() ? null : weights;
+        }));
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static class Doc {
+        private final Long id;
+        private final String name;
+        private final int price;
+        private final Map<String, Double> terms;
+
+        Doc(Long id, String name, int price, Map<String, Double> terms) {
+            this.id = id;
+            this.name = name;
+            this.price = price;
+            this.terms = terms;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package jpabook.jpashop.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 상품 검색 결과 - 인덱스에 있는 값만으로 만든다 (db 조회 없음)
+ */
+@Data
+@AllArgsConstructor
+public class ItemSearchResult {
+    private Long itemId;
+    private String name;
+    private int price;
+    private double score;
+}
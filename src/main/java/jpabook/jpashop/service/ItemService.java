@@ -1,10 +1,12 @@
 package jpabook.jpashop.service;
 
+import jpabook.jpashop.aop.OptimisticRetry;
 import jpabook.jpashop.domain.item.Book;
 import jpabook.jpashop.domain.item.Item;
 import jpabook.jpashop.repository.ItemRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
@@ -15,18 +17,24 @@ import java.util.List;
 public class ItemService {
 
     private final ItemRepository itemRepository;
+    private final StockReservationEngine stockReservationEngine;
+    private final ItemSearchIndex itemSearchIndex;
 
     @Transactional
     public void saveItem(Item item){
         itemRepository.save(item);
+        itemSearchIndex.index(item);    //커밋 후 검색 인덱스 반영
     }
 
+    @OptimisticRetry
     @Transactional
     public void updateItem(Long itemId, String name, int price, int stockQuantity){
         Item findItem = itemRepository.findOne(itemId);
         findItem.setPrice(price);
         findItem.setName(name);
         findItem.setStockQuantity(stockQuantity);
+        stockReservationEngine.evict(itemId);  //커밋 후 예약 카운터를 db 값으로 다시 맞춘다
+        itemSearchIndex.index(findItem);
 //        itemRepository.save(findItem);    영속 엔티티임으로 변경 감지가 일어난다
     }
 
@@ -34,6 +42,15 @@ public class ItemService {
         return itemRepository.findAll();
     }
 
+    /**
+     * 상품 검색 - 메모리 인덱스에서 조회 (db 조회 없음)
+     * 읽기 전용 트랜잭션도 시작할 때 커넥션을 가져오므로 트랜잭션 없이 실행한다
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<ItemSearchResult> searchItems(String query, int limit) {
+        return itemSearchIndex.search(query, limit);
+    }
+
     public Item findOne(Long itemId){
         return itemRepository.findOne(itemId);
     }
@@ -1,15 +1,18 @@
 package jpabook.jpashop.service;
 
 import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.MemberRenamedEvent;
 import jpabook.jpashop.repository.MemberRepository;
 import jpabook.jpashop.repository.MemberRepository;
 import lombok.AllArgsConstructor;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Objects;
 
 @Service
 @Transactional(readOnly = true) //jpa 조회 최적화, 읽기 전용에서만 readOnly true option
@@ -19,6 +22,7 @@ public class MemberService {
 //    @Autowired
 //field injection
     private final MemberRepository memberRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
 //    setter injection
 //    @Autowired
@@ -74,6 +78,9 @@ public class MemberService {
     @Transactional
     public void update(Long memberId, String name) {
         Member member = memberRepository.findById(memberId).get();
-        member.setName(name);
+        if (!Objects.equals(name, member.getName())) {
+            member.setName(name);
+            eventPublisher.publishEvent(new MemberRenamedEvent(memberId, name));   //주문 요약의 회원 이름 갱신
+        }
     }
 }
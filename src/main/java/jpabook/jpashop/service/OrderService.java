@@ -1,21 +1,36 @@
 package jpabook.jpashop.service;
 
+import jpabook.jpashop.aop.OptimisticRetry;
 import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.DeliveryStatus;
 import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderCanceledEvent;
 import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderPlacedEvent;
 import jpabook.jpashop.domain.item.Item;
 import jpabook.jpashop.repository.ItemRepository;
 import jpabook.jpashop.repository.MemberRepository;
+import jpabook.jpashop.repository.OrderListDto;
 import jpabook.jpashop.repository.OrderRepository;
 import jpabook.jpashop.repository.OrderSearch;
 import jpabook.jpashop.service.query.OrderDto;
 import lombok.RequiredArgsConstructor;
 import org.aspectj.weaver.ast.Or;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,10 +41,13 @@ public class OrderService {
     private final OrderRepository orderRepository;
     private final MemberRepository memberRepository;
     private final ItemRepository itemRepository;
+    private final StockReservationEngine stockReservationEngine;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * 주문
      */
+    @OptimisticRetry
     @Transactional
     public Long order(Long memberId, Long itemId, int count){
 
@@ -42,20 +60,72 @@ public class OrderService {
         delivery.setAddress(member.getAddress());
 
         //주문상품 생성
-        OrderItem orderItem = OrderItem.createOrderItem(item, item.getPrice(), count);
+        OrderItem orderItem = createOrderItem(item, count);
 
         //주문 생성
         Order order = Order.createOrder(member, delivery, orderItem);
 
         //주문 저장
         orderRepository.save(order);
+        eventPublisher.publishEvent(new OrderPlacedEvent(order));
 
         return order.getId();
     }
 
+    /**
+     * 대량 주문 - 여러 주문을 한 트랜잭션에서 생성
+     * 회원/상품은 타입별로 IN 쿼리 한 번씩 조회하고, insert 는 hibernate.jdbc.batch_size 단위로 묶여서 나간다
+     */
+    @OptimisticRetry
+    @Transactional
+    public List<Long> orderBulk(List<BulkOrderDto> orders){
+        Set<Long> memberIds = new LinkedHashSet<>();
+        Set<Long> itemIds = new LinkedHashSet<>();
+        for (BulkOrderDto dto : orders) {
+            memberIds.add(dto.getMemberId());
+            dto.getOrderItems().forEach(line -> itemIds.add(line.getItemId()));
+        }
+
+        //엔티티 조회
+        Map<Long, Member> members = memberRepository.findAllById(memberIds).stream()
+                .collect(Collectors.toMap(Member::getId, Function.identity()));
+        Map<Long, Item> items = itemRepository.findAllById(itemIds).stream()
+                .collect(Collectors.toMap(Item::getId, Function.identity()));
+
+        List<Long> orderIds = new ArrayList<>();
+        for (BulkOrderDto dto : orders) {
+            if (dto.getOrderItems().isEmpty()) {
+                throw new IllegalArgumentException("주문 상품이 없습니다. memberId=" + dto.getMemberId());
+            }
+            Member member = getOrThrow(members, dto.getMemberId(), "회원");
+
+            Delivery delivery = new Delivery();
+            delivery.setAddress(member.getAddress());
+
+            OrderItem[] orderItems = dto.getOrderItems().stream()
+                    .map(line -> createOrderItem(getOrThrow(items, line.getItemId(), "상품"), line.getCount()))
+                    .toArray(OrderItem[]::new);
+
+            Order order = Order.createOrder(member, delivery, orderItems);
+            orderRepository.save(order);
+            eventPublisher.publishEvent(new OrderPlacedEvent(order));
+            orderIds.add(order.getId());
+        }
+        return orderIds;
+    }
+
+    private static <T> T getOrThrow(Map<Long, T> entities, Long id, String name) {
+        T entity = entities.get(id);
+        if (entity == null) {
+            throw new IllegalArgumentException("존재하지 않는 " + name + " 입니다. id=" + id);
+        }
+        return entity;
+    }
+
     /**
      * 주문 취소
      */
+    @OptimisticRetry
     @Transactional
     public void cancelOrder(Long orderId){
         //주문 엔티티 조회
@@ -65,7 +135,90 @@ public class OrderService {
         //자동 update...dirty checking... 변경 내역 감
         //order status update
         //order stockQuantity update
-        order.cancel();
+        if (stockReservationEngine.isEnabled()) {
+            order.cancelWithoutRestock();
+            for (OrderItem orderItem : order.getOrderItems()) {
+                stockReservationEngine.release(orderItem.getItem().getId(), orderItem.getCount());
+            }
+        } else {
+            order.cancel();
+        }
+        eventPublisher.publishEvent(new OrderCanceledEvent(Collections.singletonList(orderId)));
+    }
+
+    /**
+     * 일괄 주문 취소 - 주문 id 로, 배송완료된 주문이 하나라도 있으면 전체 실패 (없는/이미 취소된 주문은 건너뛴다)
+     * @return 취소한 주문 id
+     */
+    @OptimisticRetry
+    @Transactional
+    public List<Long> cancelOrders(List<Long> orderIds){
+        Map<Long, DeliveryStatus> targets = orderRepository.findCancelTargets(orderIds);
+        List<Long> completed = targets.entrySet().stream()
+                .filter(target -> target.getValue() == DeliveryStatus.COMP)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        if (!completed.isEmpty()) {
+            throw new IllegalStateException("이미 배송완료된 상품은 취소가 불가능합니다. orderIds=" + completed);
+        }
+        return cancelAll(new ArrayList<>(targets.keySet()));
+    }
+
+    /**
+     * 회원의 주문 일괄 취소 - 배송완료된 주문은 빼고 취소
+     */
+    @OptimisticRetry
+    @Transactional
+    public List<Long> cancelOrdersOfMember(Long memberId){
+        return cancelAll(cancelable(orderRepository.findCancelTargets(memberId)));
+    }
+
+    /**
+     * 검색 조건(상태, 주문일 범위 등)에 맞는 주문 일괄 취소 - 배송완료된 주문은 빼고 취소
+     */
+    @OptimisticRetry
+    @Transactional
+    public List<Long> cancelOrdersMatching(OrderSearch orderSearch){
+        return cancelAll(cancelable(orderRepository.findCancelTargets(orderSearch)));
+    }
+
+    private static List<Long> cancelable(Map<Long, DeliveryStatus> targets) {
+        return targets.entrySet().stream()
+                .filter(target -> target.getValue() != DeliveryStatus.COMP)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 주문마다 엔티티를 읽어 취소하지 않고
+     * 상태 update 한 번 + 상품별로 합친 재고 복구 batch 한 번 + 주문 요약 update 한 번
+     */
+    private List<Long> cancelAll(List<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return orderIds;
+        }
+        if (orderRepository.cancelAll(orderIds) != orderIds.size()) {
+            //검증 후 다른 트랜잭션이 취소/배송완료 처리한 주문이 있다, 롤백 후 다시 검증부터
+            throw new OptimisticLockingFailureException("취소하는 동안 주문 상태가 바뀌었습니다. orderIds=" + orderIds);
+        }
+
+        Map<Long, Integer> restocks = orderRepository.sumCountByItem(orderIds);
+        if (stockReservationEngine.isEnabled()) {
+            restocks.forEach(stockReservationEngine::release);
+        } else {
+            itemRepository.addStockAll(restocks);
+        }
+        eventPublisher.publishEvent(new OrderCanceledEvent(orderIds));
+        return orderIds;
+    }
+
+    private OrderItem createOrderItem(Item item, int count) {
+        if (stockReservationEngine.isEnabled()) {
+            //메모리 카운터에서 차감(item row 락 없음), db 반영은 엔진이 batch 로
+            stockReservationEngine.reserve(item, count);
+            return OrderItem.createReservedOrderItem(item, item.getPrice(), count);
+        }
+        return OrderItem.createOrderItem(item, item.getPrice(), count);
     }
 
     /**
@@ -74,6 +227,9 @@ public class OrderService {
     public List<Order> findOrders(OrderSearch orderSearch){
         return orderRepository.findAll(orderSearch);
     }
+    public Page<OrderListDto> findOrderList(OrderSearch orderSearch, Pageable pageable){
+        return orderRepository.findOrderList(orderSearch, pageable);
+    }
     public List<Order> findOrdersAllByString(OrderSearch orderSearch){
         List<Order> result = orderRepository.findAllByString(orderSearch);
         return result;
@@ -0,0 +1,38 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.MemberRenamedEvent;
+import jpabook.jpashop.domain.OrderCanceledEvent;
+import jpabook.jpashop.domain.OrderPlacedEvent;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.OrderSummary;
+import jpabook.jpashop.repository.OrderSummaryRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * 주문 이벤트를 받아서 order_summary 를 갱신한다
+ * 동기 리스너라서 발행한 트랜잭션에 참여한다 - 주문과 요약이 같이 커밋/롤백된다
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderSummaryProjector {
+
+    private final OrderSummaryRepository orderSummaryRepository;
+
+    @EventListener
+    public void on(OrderPlacedEvent event) {
+        orderSummaryRepository.save(OrderSummary.of(event.getOrder()));
+    }
+
+    @EventListener
+    public void on(OrderCanceledEvent event) {
+        orderSummaryRepository.updateStatus(event.getOrderIds(), OrderStatus.CANCEL);
+    }
+
+    //요약에 복사해 둔 회원 이름도 바꾼다
+    @EventListener
+    public void on(MemberRenamedEvent event) {
+        orderSummaryRepository.updateMemberName(event.getMemberId(), event.getName());
+    }
+}
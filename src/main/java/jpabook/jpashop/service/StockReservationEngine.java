@@ -0,0 +1,275 @@
+package jpabook.jpashop.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 메모리 재고 예약 엔진 (jpashop.stock.reservation.enabled=true 일 때만 사용)
+ *
+ * 상품마다 재고 카운터를 두고 메모리에서 차감해서 재고 부족(NotEnoughStockException)을 판단한다
+ * item row 락을 잡지 않고 상품별 메모리 락만 잠깐 잡으니 인기 상품에 주문이 몰려도 db 에서 직렬화되지 않고, 카운터가 0 밑으로 내려가지 않으니 초과 판매도 없다
+ *
+ * 카운터가 없으면(처음, evict 후, flush 실패 후) 2차 캐시를 거치지 않은 db 재고 - pending - inFlight 로 다시 만든다
+ * - inFlight : 예약했지만 아직 커밋/롤백되지 않은 수량, 예약할 때 더하고 트랜잭션이 끝나면 뺀다
+ * - 카운터를 다시 만드는 동안에도 진행 중인 예약이 빠지지 않도록 상품별 락 안에서 만든다
+ *
+ * 차감/복구된 수량은 트랜잭션 커밋 후에 pending 에 쌓이고 flush 스레드가 주기적으로
+ * update item set stock_quantity = stock_quantity - ?, version = version + 1 where item_id = ? and stock_quantity >= ? 를 batch 로 반영한다
+ * db 재고가 모자라 반영하지 못한 차감량은 pending 에 남겨 계속 다시 시도하고 jpashop.stock.flush.failures 로 알린다
+ */
+@Slf4j
+@Component
+public class StockReservationEngine implements MeterBinder {
+
+    private final boolean enabled;
+    private final long flushIntervalMs;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManagerFactory emf;
+
+    private final Map<Long, AtomicInteger> available = new ConcurrentHashMap<>();  //예약 가능 재고
+    private final Map<Long, AtomicInteger> pending = new ConcurrentHashMap<>();    //db 에 아직 반영 안 된 차감량(음수면 복구)
+    private final Map<Long, Integer> inFlight = new ConcurrentHashMap<>();          //커밋 전 예약량
+    private final Map<Long, Object> locks = new ConcurrentHashMap<>();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private ScheduledExecutorService flusher;
+
+    public StockReservationEngine(@Value("${jpashop.stock.reservation.enabled:false}") boolean enabled,
+                                  @Value("${jpashop.stock.reservation.flush-interval-ms:100}") long flushIntervalMs,
+                                  JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  EntityManagerFactory emf) {
+        this.enabled = enabled;
+        this.flushIntervalMs = flushIntervalMs;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.emf = emf;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "stock-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flusher != null) {
+            flusher.shutdown();
+            flushQuietly();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("jpashop.stock.flush.failures", flushFailures, AtomicLong::get)
+                .description("db 재고가 부족해서 반영하지 못한 차감 수 (알림 대상)")
+                .register(registry);
+    }
+
+    public long getFlushFailures() {
+        return flushFailures.get();
+    }
+
+    /**
+     * 재고 차감(예약), 트랜잭션이 롤백되면 되돌린다
+     */
+    public void reserve(Item item, int count) {
+        Long itemId = item.getId();
+        synchronized (lockOf(itemId)) {
+            AtomicInteger stock = available.get(itemId);
+            if (stock == null) {
+                stock = new AtomicInteger(seed(itemId));
+                available.put(itemId, stock);
+            }
+            if (stock.get() < count) {
+                throw new NotEnoughStockException("need more stock");
+            }
+            stock.addAndGet(-count);
+            inFlight.merge(itemId, count, Integer::sum);
+        }
+
+        afterCompletion(() -> {
+            synchronized (lockOf(itemId)) {
+                pending.computeIfAbsent(itemId, id -> new AtomicInteger()).addAndGet(count);
+                inFlight.merge(itemId, -count, StockReservationEngine::sumOrNull);
+            }
+        }, () -> {
+            synchronized (lockOf(itemId)) {
+                inFlight.merge(itemId, -count, StockReservationEngine::sumOrNull);
+                //그 사이 카운터를 다시 만들었어도 이 예약량은 빠져 있으므로 지금 카운터에 돌려준다
+                AtomicInteger stock = available.get(itemId);
+                if (stock != null) {
+                    stock.addAndGet(count);
+                }
+            }
+        });
+    }
+
+    /**
+     * 재고 복구(주문 취소), 커밋된 경우에만 반영
+     */
+    public void release(Long itemId, int count) {
+        afterCompletion(() -> {
+            synchronized (lockOf(itemId)) {
+                AtomicInteger stock = available.get(itemId);
+                if (stock != null) {
+                    stock.addAndGet(count);
+                }
+                pending.computeIfAbsent(itemId, id -> new AtomicInteger()).addAndGet(-count);
+            }
+        }, () -> { });
+    }
+
+    /**
+     * 상품 재고를 직접 수정한 경우 - 수정한 값이 기준이 되므로 쌓인 차감량은 버리고 다음 예약 때 db 값으로 다시 읽는다
+     */
+    public void evict(Long itemId) {
+        afterCompletion(() -> {
+            synchronized (lockOf(itemId)) {
+                pending.remove(itemId);
+                available.remove(itemId);
+            }
+        }, () -> { });
+    }
+
+    /**
+     * 쌓인 차감/복구량을 db 에 batch 로 반영
+     * 반영한 양은 커밋 후에 pending 에서 뺀다 (그 사이 카운터를 새로 만들어도 db 값 - pending - inFlight 가 실제 재고보다 커지지 않도록)
+     */
+    public void flush() {
+        List<Object[]> removes = new ArrayList<>();
+        List<Object[]> adds = new ArrayList<>();
+        Map<Long, Integer> flushed = new LinkedHashMap<>();
+        Map<Long, AtomicInteger> deltas = new LinkedHashMap<>();
+        pending.forEach((itemId, delta) -> {
+            int amount = delta.get();
+            if (amount > 0) {
+                removes.add(new Object[]{amount, itemId, amount});
+            } else if (amount < 0) {
+                adds.add(new Object[]{-amount, itemId});
+            }
+            if (amount != 0) {
+                flushed.put(itemId, amount);
+                deltas.put(itemId, delta);
+            }
+        });
+        if (flushed.isEmpty()) {
+            return;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            int[] removed = jdbcTemplate.batchUpdate(
+                    "update item set stock_quantity = stock_quantity - ?, version = version + 1 where item_id = ? and stock_quantity >= ?", removes);
+            jdbcTemplate.batchUpdate(
+                    "update item set stock_quantity = stock_quantity + ?, version = version + 1 where item_id = ?", adds);
+
+            for (int i = 0; i < removed.length; i++) {
+                if (removed[i] == 0) {
+                    //엔진 밖에서 재고가 줄어든 경우(관리자 수정 등) - 이미 커밋된 주문의 차감량이므로 버리지 않고 pending 에 남겨 다음 flush 에서 다시 시도한다
+                    //카운터는 버리고 db 값 - pending - inFlight 로 다시 읽으므로 그 사이 새 예약은 재고 부족이 된다 (초과 판매 없음)
+                    Long itemId = (Long) removes.get(i)[1];
+                    log.error("재고 반영 실패, db 재고가 커밋된 차감량보다 적습니다. itemId={}, amount={}", itemId, removes.get(i)[0]);
+                    flushFailures.incrementAndGet();
+                    flushed.remove(itemId);
+                    synchronized (lockOf(itemId)) {
+                        available.remove(itemId);
+                    }
+                }
+            }
+        });
+
+        //2차 캐시의 재고 값이 바뀌었으니 해당 상품만 제거한 뒤 실제로 반영한 양만 pending 에서 뺀다
+        flushed.forEach((itemId, amount) -> {
+            emf.getCache().evict(Item.class, itemId);
+            deltas.get(itemId).addAndGet(-amount);
+        });
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("재고 반영 실패", e);
+        }
+    }
+
+    /**
+     * 예약 가능 재고 = db 재고 - pending - inFlight
+     * flush 는 db 에 커밋한 뒤 pending 에서 빼므로 pending 을 먼저 읽는다 (반대 순서면 flush 한 양이 양쪽에서 빠져 재고가 많아 보인다)
+     */
+    private int seed(Long itemId) {
+        int unflushed = pendingOf(itemId) + inFlight.getOrDefault(itemId, 0);
+        Integer stockQuantity = jdbcTemplate.queryForObject(
+                "select stock_quantity from item where item_id = ?", Integer.class, itemId);
+        return (stockQuantity == null ? 0 : stockQuantity) - unflushed;
+    }
+
+    //0 이 되면 항목을 지운다
+    private static Integer sumOrNull(Integer a, Integer b) {
+        int sum = a + b;
+        return sum == 0 ? null : sum;
+    }
+
+    private Object lockOf(Long itemId) {
+        return locks.computeIfAbsent(itemId, id -> new Object());
+    }
+
+    int pendingOf(Long itemId) {
+        AtomicInteger delta = pending.get(itemId);
+        return delta == null ? 0 : delta.get();
+    }
+
+    private void afterCompletion(Runnable onCommit, Runnable onRollback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            onCommit.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    onCommit.run();
+                } else {
+                    onRollback.run();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,13 @@
+package jpabook.jpashop.service.query;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class OrderCursorPage {
+    private List<OrderDto> data;
+    private String nextCursor;  //마지막 페이지면 null
+}
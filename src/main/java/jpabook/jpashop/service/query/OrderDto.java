@@ -4,6 +4,7 @@ import jpabook.jpashop.domain.Address;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderItem;
 import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.BatchLoadContext;
 import lombok.Data;
 
 import java.time.LocalDateTime;
@@ -32,5 +33,11 @@ public class OrderDto {
         orderItems = order.getOrderItems().stream().map(orderItem -> new OrderItemDto(orderItem)).collect(Collectors.toList());
 
     }
-}
 
+    //생성자에서 접근하는 지연로딩 연관관계 등록 (orderItems 의 item 은 OrderItemDto 가 등록)
+    public static void registerKeys(Order order, BatchLoadContext context) {
+        context.register(order.getMember());
+        context.register(order.getDelivery());
+        context.register(order.getOrderItems());
+    }
+}
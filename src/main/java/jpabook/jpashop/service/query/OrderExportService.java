@@ -0,0 +1,90 @@
+package jpabook.jpashop.service.query;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.repository.order.query.OrderFlatDto;
+import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 주문 전체 export
+ * 커서로 읽은 row 를 바로 출력 스트림에 쓰기 때문에 주문 수와 상관없이 힙 사용량이 일정하다
+ */
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class OrderExportService {
+
+    private static final int FETCH_SIZE = 500;
+    private static final String CSV_HEADER = "orderId,name,orderDate,orderStatus,city,street,zipcode,itemName,orderPrice,count";
+
+    private final OrderQueryRepository orderQueryRepository;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 한 줄에 json 하나(NDJSON)
+     */
+    public void exportNdjson(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        stream(row -> {
+            writer.write(objectMapper.writeValueAsString(row));
+            writer.write('\n');
+        });
+        writer.flush();
+    }
+
+    public void exportCsv(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        stream(row -> {
+            Address address = row.getAddress();
+            writer.write(row.getOrderId() + "," + csv(row.getName()) + "," + row.getOrderDate() + "," + row.getOrderStatus()
+                    + "," + csv(address == null ? null : address.getCity())
+                    + "," + csv(address == null ? null : address.getStreet())
+                    + "," + csv(address == null ? null : address.getZipcode())
+                    + "," + csv(row.getItemName()) + "," + row.getOrderPrice() + "," + row.getCount());
+            writer.write('\n');
+        });
+        writer.flush();
+    }
+
+    private void stream(RowWriter rowWriter) throws IOException {
+        try {
+            orderQueryRepository.streamAllByDto_flat(FETCH_SIZE, row -> {
+                try {
+                    rowWriter.write(row);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();   //클라이언트가 연결을 끊은 경우 등
+        }
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(OrderFlatDto row) throws IOException;
+    }
+}
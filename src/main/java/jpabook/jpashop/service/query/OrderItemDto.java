@@ -1,6 +1,7 @@
 package jpabook.jpashop.service.query;
 
 import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.repository.BatchLoadContext;
 import lombok.Data;
 
 @Data
@@ -14,4 +15,8 @@ public class OrderItemDto {
         orderPrice = orderItem.getOrderPrice();
         count = orderItem.getCount();
     }
-}
\ No newline at end of file
+
+    public static void registerKeys(OrderItem orderItem, BatchLoadContext context) {
+        context.register(orderItem.getItem());
+    }
+}
@@ -2,6 +2,10 @@ package jpabook.jpashop.service.query;
 
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.exception.BadRequestException;
+import jpabook.jpashop.repository.BatchLoadContext;
+import jpabook.jpashop.repository.EntityBatchLoader;
+import jpabook.jpashop.repository.OrderCursor;
 import jpabook.jpashop.repository.OrderRepository;
 import jpabook.jpashop.repository.OrderSearch;
 import lombok.RequiredArgsConstructor;
@@ -9,6 +13,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 /**
@@ -19,6 +24,7 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class OrderQueryService {
     private final OrderRepository orderRepository;
+    private final EntityBatchLoader entityBatchLoader;
 
     public List<Order> ordersV1(OrderSearch orderSearch){
         List<Order> all = orderRepository.findAllByString(orderSearch);
@@ -42,6 +48,35 @@ public class OrderQueryService {
         return collect;
     }
 
+    /**
+     * 엔티티 조회 후 DTO로 변환 - 연관관계를 타입별로 모아서 한 번에 조회
+     * 주문 1 + 회원 1 + 배송 1 + 주문상품 1 + 상품 1 (주문 수와 무관)
+     */
+    public List<OrderDto> ordersV2Batch(OrderSearch orderSearch) {
+        List<Order> orders = orderRepository.findAllByString(orderSearch);
+
+        BatchLoadContext context = entityBatchLoader.newContext();
+        orders.forEach(o -> OrderDto.registerKeys(o, context));
+        context.resolve();  //member, delivery, orderItems
+        orders.forEach(o -> o.getOrderItems().forEach(oi -> OrderItemDto.registerKeys(oi, context)));
+        context.resolve();  //item
+
+        return orders.stream().map(o -> new OrderDto(o)).collect(Collectors.toList());
+    }
+
+    /**
+     * keyRegistrar 가 등록한 연관관계를 초기화한 주문 목록
+     * 트랜잭션이 끝난 뒤(컨트롤러)에서 DTO 로 변환해도 지연로딩 예외가 나지 않는다
+     */
+    public List<Order> findOrdersBatch(OrderSearch orderSearch, BiConsumer<Order, BatchLoadContext> keyRegistrar) {
+        List<Order> orders = orderRepository.findAllByString(orderSearch);
+
+        BatchLoadContext context = entityBatchLoader.newContext();
+        orders.forEach(o -> keyRegistrar.accept(o, context));
+        context.resolve();
+        return orders;
+    }
+
     public List<OrderDto> ordersV3() {
         List<Order> orders = orderRepository.findAllWithItem();
         for (Order order : orders) {
@@ -50,6 +85,25 @@ public class OrderQueryService {
         List<OrderDto> collect = orders.stream().map(o -> new OrderDto(o)).collect(Collectors.toList());
         return collect;
     }
+
+    /**
+     * keyset 페이징 - 컬렉션은 default_batch_fetch_size 로 IN 조회
+     * limit + 1 건을 조회해서 다음 페이지 존재 여부를 판단한다
+     */
+    public OrderCursorPage ordersV3Cursor(String cursor, int limit) {
+        if (limit < 1 || limit > 1000) {
+            throw new BadRequestException("limit 은 1 ~ 1000 사이여야 합니다.");
+        }
+        List<Order> orders = orderRepository.findAllWithMemberDelivery(OrderCursor.decode(cursor), limit + 1);
+
+        String nextCursor = null;
+        if (orders.size() > limit) {
+            orders = orders.subList(0, limit);
+            nextCursor = OrderCursor.of(orders.get(limit - 1)).encode();
+        }
+        List<OrderDto> collect = orders.stream().map(o -> new OrderDto(o)).collect(Collectors.toList());
+        return new OrderCursorPage(collect, nextCursor);
+    }
 }
 
 /*
@@ -0,0 +1,79 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 잘못된 요청은 서비스까지 가지 않고 BadRequestException(400) 으로 응답
+ */
+@SpringBootTest
+@Transactional
+class OrderApiControllerTest {
+
+    @Autowired
+    OrderApiController orderApiController;
+
+    @Test
+    public void 대량주문_잘못된_요청() throws Exception {
+        //when then
+        assertThrows(BadRequestException.class, () -> orderApiController.saveOrdersBulk(new OrderApiController.CreateBulkOrderRequest()),
+                "주문 목록이 없으면 400");
+        assertThrows(BadRequestException.class, () -> orderApiController.saveOrdersBulk(bulk(null, 1L, 1)), "회원 id 가 없으면 400");
+        assertThrows(BadRequestException.class, () -> orderApiController.saveOrdersBulk(bulk(1L, null, 1)), "상품 id 가 없으면 400");
+        assertThrows(BadRequestException.class, () -> orderApiController.saveOrdersBulk(bulk(1L, 1L, 0)), "수량이 0 이면 400");
+        assertThrows(BadRequestException.class, () -> orderApiController.saveOrdersBulk(bulk(1L, 1L, -3)), "수량이 음수면 400");
+
+        OrderApiController.CreateOrderRequest noItems = new OrderApiController.CreateOrderRequest();
+        noItems.setMemberId(1L);
+        OrderApiController.CreateBulkOrderRequest request = new OrderApiController.CreateBulkOrderRequest();
+        request.setOrders(Collections.singletonList(noItems));
+        assertThrows(BadRequestException.class, () -> orderApiController.saveOrdersBulk(request), "주문 상품 목록이 없으면 400");
+    }
+
+    @Test
+    public void v6_1_페이징_범위_검증() throws Exception {
+        //when then
+        assertThrows(BadRequestException.class, () -> orderApiController.ordersV6_page(-1, 100), "offset 이 음수면 400");
+        assertThrows(BadRequestException.class, () -> orderApiController.ordersV6_page(0, 0), "limit 이 0 이면 400");
+        assertThrows(BadRequestException.class, () -> orderApiController.ordersV6_page(0, 1001), "limit 이 1000 초과면 400");
+        assertThrows(BadRequestException.class, () -> orderApiController.ordersV6_pageAsync(0, 1001), "비동기도 요청 스레드에서 400");
+    }
+
+    @Test
+    public void export_지원하지_않는_format() throws Exception {
+        //given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        //when then
+        assertThrows(BadRequestException.class, () -> orderApiController.exportOrders("xml", response), "지원하지 않는 format 은 400");
+        assertNull(response.getContentType(), "400 전에 응답을 건드리지 않는다");
+    }
+
+    @Test
+    public void 일괄취소_조건_없음() throws Exception {
+        //when then
+        assertThrows(BadRequestException.class, () -> orderApiController.cancelOrdersBulk(new OrderApiController.CancelOrdersRequest()),
+                "조건 없는 일괄 취소는 400");
+    }
+
+    private static OrderApiController.CreateBulkOrderRequest bulk(Long memberId, Long itemId, int count) {
+        OrderApiController.CreateOrderItemRequest orderItem = new OrderApiController.CreateOrderItemRequest();
+        orderItem.setItemId(itemId);
+        orderItem.setCount(count);
+        OrderApiController.CreateOrderRequest order = new OrderApiController.CreateOrderRequest();
+        order.setMemberId(memberId);
+        order.setOrderItems(Arrays.asList(orderItem));
+        OrderApiController.CreateBulkOrderRequest request = new OrderApiController.CreateBulkOrderRequest();
+        request.setOrders(Arrays.asList(order));
+        return request;
+    }
+}
@@ -0,0 +1,35 @@
+package jpabook.jpashop.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcPermitDataSourceTest {
+
+    @Test
+    public void permit_대기_시간_초과() throws Exception {
+        //given
+        JdbcPermitDataSource dataSource = new JdbcPermitDataSource(
+                new DriverManagerDataSource("jdbc:h2:mem:permit;DB_CLOSE_DELAY=-1", "sa", ""), 1, 100);
+
+        //when
+        Connection held = dataSource.getConnection();
+
+        //then
+        long start = System.currentTimeMillis();
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection, "permit 을 못 받으면 기다리다 예외로 끝나야 한다.");
+        assertTrue(System.currentTimeMillis() - start >= 100, "timeout 만큼은 기다린다.");
+        assertEquals(0, dataSource.availablePermits(), "실패한 대기는 permit 을 가져가지 않는다.");
+
+        held.close();
+        held.close();
+        assertEquals(1, dataSource.availablePermits(), "close 를 여러 번 불러도 permit 은 한 번만 반납한다.");
+        try (Connection next = dataSource.getConnection()) {
+            assertFalse(next.isClosed());
+        }
+    }
+}
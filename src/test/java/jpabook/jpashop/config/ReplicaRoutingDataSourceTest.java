@@ -0,0 +1,195 @@
+package jpabook.jpashop.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.Cookie;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * H2 메모리 DB 3개(primary, replica-1, replica-2)로 라우팅 확인
+ * 각 DB 의 node 테이블에 자기 이름을 넣어두고 어느 DB 에서 조회했는지 본다
+ */
+class ReplicaRoutingDataSourceTest {
+
+    HikariDataSource primary;
+    HikariDataSource replica1;
+    HikariDataSource replica2;
+    ReplicaRoutingDataSource routing;
+    JdbcTemplate jdbc;
+    TransactionTemplate write;
+    TransactionTemplate readOnly;
+
+    @BeforeEach
+    public void setUp() {
+        primary = h2("primary");
+        replica1 = h2("replica-1");
+        replica2 = h2("replica-2");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        routing.close();
+    }
+
+    @Test
+    public void 읽기전용은_replica_라운드로빈() throws Exception {
+        //given
+        route(ReplicaRoutingDataSource.Strategy.ROUND_ROBIN, 0);
+
+        //when then
+        assertEquals("replica-1", readOnly.execute(s -> node()));
+        assertEquals("replica-2", readOnly.execute(s -> node()));
+        assertEquals("replica-1", readOnly.execute(s -> node()), "replica 를 번갈아 사용해야 한다.");
+        assertEquals("primary", write.execute(s -> node()), "쓰기 트랜잭션은 primary 로 가야 한다.");
+        assertEquals("primary", node(), "트랜잭션 밖은 primary 로 가야 한다.");
+    }
+
+    @Test
+    public void 지연된_replica_제외() throws Exception {
+        //given
+        route(ReplicaRoutingDataSource.Strategy.ROUND_ROBIN, 0);
+        new JdbcTemplate(replica1).update("update lag set ms = 5000");
+
+        //when
+        routing.checkLag();
+
+        //then
+        assertEquals(1, routing.getHealthyReplicas().size());
+        assertEquals("replica-2", readOnly.execute(s -> node()));
+        assertEquals("replica-2", readOnly.execute(s -> node()), "지연된 replica 로는 보내지 않아야 한다.");
+
+        new JdbcTemplate(replica2).update("update lag set ms = 5000");
+        routing.checkLag();
+        assertEquals("primary", readOnly.execute(s -> node()), "조회 가능한 replica 가 없으면 primary 로 가야 한다.");
+    }
+
+    @Test
+    public void 활성_커넥션이_적은_replica() throws Exception {
+        //given
+        route(ReplicaRoutingDataSource.Strategy.LEAST_LOADED, 0);
+
+        //when
+        Connection busy = replica1.getConnection();
+        try {
+            //then
+            assertEquals("replica-2", readOnly.execute(s -> node()), "커넥션을 사용 중인 replica 는 피해야 한다.");
+        } finally {
+            busy.close();
+        }
+    }
+
+    @Test
+    public void 쓰기_후_읽기는_primary() throws Exception {
+        //given
+        route(ReplicaRoutingDataSource.Strategy.ROUND_ROBIN, 60_000);
+        assertEquals("replica-1", readOnly.execute(s -> node()));
+
+        //when
+        write.execute(s -> jdbc.update("update node set name = name"));
+
+        //then
+        assertEquals("primary", readOnly.execute(s -> node()), "쓰기 커밋 직후 조회는 primary 로 가야 한다.");
+    }
+
+    @Test
+    public void 쓰기_후_읽기_요청범위() throws Exception {
+        //given
+        route(ReplicaRoutingDataSource.Strategy.ROUND_ROBIN, 60_000);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest(), response));
+        try {
+            //when
+            write.execute(s -> jdbc.update("update node set name = name"));
+
+            //then
+            assertEquals("primary", readOnly.execute(s -> node()), "같은 요청의 조회는 primary 로 가야 한다.");
+            assertNotNull(response.getCookie(ReplicaRoutingDataSource.STICKY_COOKIE), "다음 요청을 위해 쿠키를 내려야 한다.");
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+
+        //다른 클라이언트의 요청이 같은 스레드에서 처리돼도 primary 로 고정되지 않는다
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        try {
+            assertEquals("replica-1", readOnly.execute(s -> node()), "요청이 끝나면 스레드에 남지 않아야 한다.");
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+        assertEquals("replica-2", readOnly.execute(s -> node()), "요청 밖에서도 스레드에 남지 않아야 한다.");
+    }
+
+    @Test
+    public void 쿠키_만료시각_상한() throws Exception {
+        //given
+        route(ReplicaRoutingDataSource.Strategy.ROUND_ROBIN, 60_000);
+        MockHttpServletRequest valid = new MockHttpServletRequest();
+        valid.setCookies(new Cookie(ReplicaRoutingDataSource.STICKY_COOKIE, String.valueOf(System.currentTimeMillis() + 30_000)));
+        MockHttpServletRequest forged = new MockHttpServletRequest();
+        forged.setCookies(new Cookie(ReplicaRoutingDataSource.STICKY_COOKIE, String.valueOf(Long.MAX_VALUE)));
+
+        //when then
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(valid));
+        try {
+            assertEquals("primary", readOnly.execute(s -> node()), "readYourWritesMs 안의 쿠키는 primary 로 가야 한다.");
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(forged));
+        try {
+            assertEquals("replica-1", readOnly.execute(s -> node()), "readYourWritesMs 보다 먼 쿠키는 무시해야 한다.");
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    //H2 3개를 라우팅 datasource 로 묶고, 첫 sql 실행 때 커넥션을 가져오도록 LazyConnectionDataSourceProxy 로 감싼다
+    private void route(ReplicaRoutingDataSource.Strategy strategy, long readYourWritesMs) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-1", replica1);
+        replicas.put("replica-2", replica2);
+        routing = new ReplicaRoutingDataSource(primary, replicas, strategy, "select ms from lag", 1000, readYourWritesMs);
+        routing.checkLag();
+
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbc = new JdbcTemplate(dataSource);
+        write = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    private String node() {
+        return jdbc.queryForObject("select name from node", String.class);
+    }
+
+    private static HikariDataSource h2(String name) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setPoolName(name);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table if not exists node (name varchar(20))");
+        jdbc.execute("create table if not exists lag (ms bigint)");
+        jdbc.update("delete from node");
+        jdbc.update("delete from lag");
+        jdbc.update("insert into node values (?)", name);
+        jdbc.update("insert into lag values (0)");
+        return dataSource;
+    }
+}
@@ -0,0 +1,67 @@
+package jpabook.jpashop.monitoring;
+
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.service.MemberService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class HibernateStatsEndpointTest {
+
+    @Autowired
+    HibernateStatsEndpoint endpoint;
+    @Autowired
+    SlowQueryRecorder slowQueryRecorder;
+    @Autowired
+    MemberService memberService;
+    @Value("${jpashop.slow-query.threshold-ms:200}")
+    long thresholdMs;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void 엔티티_통계와_느린_sql() throws Exception {
+        //given - threshold 0 이면 모든 sql 이 기록된다
+        Member member = new Member();
+        member.setName("통계회원");
+        memberService.join(member);
+        slowQueryRecorder.clear();
+        slowQueryRecorder.setThresholdMs(0);
+        Map<String, Object> stats;
+        try {
+            //when
+            memberService.findMembers();
+            stats = endpoint.stats();
+        } finally {
+            slowQueryRecorder.setThresholdMs(thresholdMs);
+        }
+
+        //then
+        Map<String, Object> entities = (Map<String, Object>) stats.get("entities");
+        assertTrue(entities.keySet().containsAll(Arrays.asList("Order", "OrderItem", "Member", "Delivery", "Book")),
+                "주문 도메인 엔티티 통계가 있어야 한다. " + entities.keySet());
+        assertTrue((Long) ((Map<String, Object>) entities.get("Member")).get("loads") > 0, "조회한 회원 수가 집계되어야 한다.");
+
+        //다른 스레드(재고 flush 등)의 sql 이 섞일 수 있으므로 순서가 아니라 호출 위치로 찾는다
+        List<SlowQueryRecorder.SlowQuery> slowQueries = (List<SlowQueryRecorder.SlowQuery>) stats.get("slowQueries");
+        assertTrue(slowQueries.stream().anyMatch(q -> q.getSql().startsWith("select")
+                        && q.getCallSite().startsWith("service.MemberService.findMembers")),
+                "회원 조회 sql 이 첫 번째 애플리케이션 코드 위치와 함께 기록되어야 한다. " +
+                        slowQueries.stream().map(SlowQueryRecorder.SlowQuery::getCallSite).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void 파라미터_모양() throws Exception {
+        //when then
+        assertEquals("params=1", SlowQueryRecorder.parametersOf("select * from member where member_id = ?"));
+        assertEquals("params=4, in=[3]", SlowQueryRecorder.parametersOf("select * from item where item_id in (?, ?, ?) and price > ?"));
+    }
+}
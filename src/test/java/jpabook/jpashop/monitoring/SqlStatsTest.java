@@ -0,0 +1,82 @@
+package jpabook.jpashop.monitoring;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlStatsTest {
+
+    @Test
+    public void sql_모양() throws Exception {
+        //when
+        String shape1 = SqlStats.shapeOf("select m.name from member m\n  where m.member_id = 1 and m.name = 'kim'");
+        String shape2 = SqlStats.shapeOf("select m.name from member m where m.member_id in (?, ?, ?)");
+
+        //then
+        assertEquals("select m.name from member m where m.member_id = ? and m.name = ?", shape1, "값은 ? 로 바뀌어야 한다.");
+        assertEquals("select m.name from member m where m.member_id in (?)", shape2, "IN 목록 길이는 무시한다.");
+    }
+
+    @Test
+    public void 반복된_select_감지() throws Exception {
+        //given
+        SqlStats request = SqlStats.open(SqlStatsRecorder.REQUEST);
+        SqlStats method = SqlStats.open(SqlStatsRecorder.METHOD);
+
+        //when
+        for (int i = 0; i < 3; i++) {
+            SqlStats.recordStatement("select * from item where item_id = " + i, 1_000);
+            SqlStats.recordStatement("update item set stock_quantity = ? where item_id = ?", 1_000);
+        }
+        SqlStats.recordRow();
+        method.close();
+        SqlStats.recordStatement("select * from orders", 1_000);
+        request.close();
+
+        //then
+        assertEquals(6, method.getStatements(), "메서드 범위 sql 수");
+        assertEquals(7, request.getStatements(), "바깥 범위에는 안쪽 범위의 sql 도 집계된다.");
+        assertEquals(1, request.getRows());
+        Map<String, Integer> repeated = request.repeatedSelects(3);
+        assertEquals(1, repeated.size(), "update 는 N+1 검사 대상이 아니다.");
+        assertEquals(Integer.valueOf(3), repeated.get("select * from item where item_id = ?"));
+        assertNull(SqlStats.outermost(SqlStatsRecorder.REQUEST), "닫힌 범위는 남지 않는다.");
+    }
+
+    @Test
+    public void 다른_스레드로_범위_전달() throws Exception {
+        //given
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        SqlStats request = SqlStats.open(SqlStatsRecorder.REQUEST);
+
+        //when
+        try {
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(SqlStats.propagate(() -> {
+                    SqlStats.recordStatement("select * from order_item where order_id in (?, ?)", 1_000);
+                    return null;
+                })));
+            }
+            for (Future<Object> future : futures) {
+                future.get();
+            }
+            SqlStats.recordStatement("select * from orders", 1_000);
+        } finally {
+            request.close();
+        }
+
+        //then
+        assertEquals(5, request.getStatements(), "다른 스레드에서 실행된 sql 도 호출한 쪽 범위에 집계되어야 한다.");
+        assertEquals(Integer.valueOf(4), request.repeatedSelects(4).get("select * from order_item where order_id in (?)"));
+        assertNull(executor.submit(() -> SqlStats.outermost(SqlStatsRecorder.REQUEST)).get(), "작업이 끝나면 작업 스레드에 범위가 남지 않는다.");
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,46 @@
+package jpabook.jpashop.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InQueryBatchLoaderTest {
+
+    @Test
+    public void chunk_2의_거듭제곱으로_패딩() throws Exception {
+        //given
+        List<Long> ids = Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+
+        //when
+        List<List<Long>> chunks = InQueryBatchLoader.chunk(ids, 4);
+
+        //then
+        assertEquals(3, chunks.size());
+        assertEquals(Arrays.asList(9L, 10L), chunks.get(2), "마지막 chunk 는 2개 그대로(2의 거듭제곱)");
+
+        List<List<Long>> odd = InQueryBatchLoader.chunk(Arrays.asList(1L, 2L, 3L), 8);
+        assertEquals(Arrays.asList(1L, 2L, 3L, 3L), odd.get(0), "빈 자리는 마지막 id 로 채운다.");
+    }
+
+    @Test
+    public void 병렬_조회_결과_합치기() throws Exception {
+        //given
+        InQueryBatchLoader loader = new InQueryBatchLoader(16, 4);
+        List<Long> ids = IntStream.rangeClosed(1, 100).mapToObj(Long::valueOf).collect(Collectors.toList());
+
+        //when
+        List<Long> result = loader.load(ids, chunk -> new ArrayList<>(new LinkedHashSet<>(chunk)));
+
+        //then
+        assertEquals(100, result.size(), "패딩으로 채운 id 는 중복 조회되지 않아야 한다.");
+        assertEquals(ids, result.stream().sorted().collect(Collectors.toList()));
+        loader.shutdown();
+    }
+}
@@ -0,0 +1,59 @@
+package jpabook.jpashop.repository.order.query;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.OrderStatus;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlatRowAssemblerTest {
+
+    @Test
+    public void 정렬된_flat_row_조립() throws Exception {
+        //given
+        List<OrderFlatDto> flats = Arrays.asList(
+                flat(2L, "userB", "SPRING1 BOOK"),
+                flat(2L, "userB", "SPRING2 BOOK"),
+                flat(1L, "userA", "JPA1 BOOK"),
+                flat(3L, "userC", "JPA2 BOOK"));
+
+        //when
+        List<OrderQueryDto> result = OrderQueryRepository.ORDER_ASSEMBLER.assemble(flats);
+
+        //then
+        assertEquals(3, result.size(), "주문 수만큼 조립되어야 한다.");
+        assertEquals(Long.valueOf(2L), result.get(0).getOrderId(), "쿼리 정렬 순서가 유지되어야 한다.");
+        assertEquals(2, result.get(0).getOrderItems().size(), "같은 주문의 상품은 하나로 묶여야 한다.");
+        assertEquals("SPRING2 BOOK", result.get(0).getOrderItems().get(1).getItemName());
+        assertEquals(1, result.get(2).getOrderItems().size());
+    }
+
+    @Test
+    public void 스트리밍_조립() throws Exception {
+        //given
+        List<OrderFlatDto> flats = Arrays.asList(flat(1L, "userA", "JPA1 BOOK"), flat(1L, "userA", "JPA2 BOOK"));
+        List<OrderQueryDto> emitted = new ArrayList<>();
+
+        //when
+        OrderQueryRepository.ORDER_ASSEMBLER.assemble(flats.iterator(), emitted::add);
+
+        //then
+        assertEquals(1, emitted.size());
+        assertEquals(2, emitted.get(0).getOrderItems().size());
+    }
+
+    @Test
+    public void 빈_결과() throws Exception {
+        assertTrue(OrderQueryRepository.ORDER_ASSEMBLER.assemble(Collections.<OrderFlatDto>emptyList()).isEmpty());
+    }
+
+    private OrderFlatDto flat(Long orderId, String name, String itemName) {
+        return new OrderFlatDto(orderId, name, LocalDateTime.now(), OrderStatus.ORDER, new Address("seoul", "1", "1111"), itemName, 10000, 1);
+    }
+}
@@ -0,0 +1,136 @@
+package jpabook.jpashop.repository.order.query;
+
+import jpabook.jpashop.api.OrderApiController;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.exception.BadRequestException;
+import jpabook.jpashop.repository.InQueryBatchLoader;
+import jpabook.jpashop.repository.ParallelQueryRunner;
+import jpabook.jpashop.service.OrderService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+class OrderQueryRepositoryTest {   //병렬 조회는 각자 트랜잭션에서 실행되므로 @Transactional 없이 커밋된 초기 데이터로 검증
+
+    @Autowired
+    OrderQueryRepository orderQueryRepository;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    OrderService orderService;
+    @Autowired
+    ParallelQueryRunner parallelQueryRunner;
+    @Autowired
+    OrderApiController orderApiController;
+
+    @Test
+    @Transactional
+    public void 트랜잭션_안에서는_chunk_를_같은_트랜잭션에서_조회() throws Exception {
+        //given - 커밋 안 된 주문, chunk 가 여러 개가 되도록 크기 2
+        List<Long> orderIds = createUncommittedOrders();
+        InQueryBatchLoader loader = new InQueryBatchLoader(2, 4);
+        OrderQueryRepository repository = new OrderQueryRepository(em, loader, parallelQueryRunner);
+
+        //when
+        List<OrderQueryDto> result = repository.findAllByDto_optimization();
+
+        //then
+        assertTrue(result.size() > 2, "chunk 가 여러 개여야 한다.");
+        for (OrderQueryDto order : result) {
+            assertNotNull(order.getOrderItems(), "다른 커넥션에서 조회하면 커밋 안 된 주문의 주문상품이 빠진다. orderId=" + order.getOrderId());
+            assertFalse(order.getOrderItems().isEmpty());
+        }
+        assertTrue(result.stream().map(OrderQueryDto::getOrderId).collect(Collectors.toList()).containsAll(orderIds));
+        loader.shutdown();
+    }
+
+    @Test
+    @Transactional
+    public void 트랜잭션_안에서는_병렬_조회를_같은_트랜잭션에서_실행() throws Exception {
+        //given
+        List<Long> orderIds = createUncommittedOrders();
+
+        //when
+        List<OrderQueryDto> result = orderQueryRepository.findAllByDto_parallel(0, 1000);
+
+        //then
+        List<OrderQueryDto> created = result.stream()
+                .filter(o -> orderIds.contains(o.getOrderId()))
+                .collect(Collectors.toList());
+        assertEquals(orderIds.size(), created.size());
+        for (OrderQueryDto order : created) {
+            assertEquals(1, order.getOrderItems().size(), "커밋 안 된 주문상품도 보여야 한다.");
+            assertNotNull(order.getAddress(), "커밋 안 된 배송지도 보여야 한다.");
+        }
+    }
+
+    @Test
+    public void 병렬_조회_limit_검증() throws Exception {
+        //when, then
+        assertThrows(BadRequestException.class, () -> orderApiController.ordersV5_parallel(0, 0));
+        assertThrows(BadRequestException.class, () -> orderApiController.ordersV5_parallel(0, 1001));
+        assertThrows(BadRequestException.class, () -> orderApiController.ordersV5_parallel(-1, 10));
+    }
+
+    private List<Long> createUncommittedOrders() {
+        Member member = new Member();
+        member.setName("chunk회원");
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        em.persist(member);
+        Book book = new Book();
+        book.setName("chunk책");
+        book.setPrice(10000);
+        book.setStockQuantity(10);
+        em.persist(book);
+        List<Long> orderIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            orderIds.add(orderService.order(member.getId(), book.getId(), 1));
+        }
+        return orderIds;
+    }
+
+    @Test
+    public void 병렬_조회_결과는_순차_조회와_같다() throws Exception {
+        //when
+        List<OrderQueryDto> parallel = orderQueryRepository.findAllByDto_parallel(0, 100);
+        List<OrderQueryDto> flat = orderQueryRepository.findAllByDto_flat(0, 100);
+
+        //then
+        assertFalse(parallel.isEmpty());
+        assertEquals(flat.size(), parallel.size(), "주문 수가 같아야 한다.");
+        for (int i = 0; i < flat.size(); i++) {
+            OrderQueryDto expected = flat.get(i);
+            OrderQueryDto actual = parallel.get(i);
+            assertEquals(expected.getOrderId(), actual.getOrderId(), "order id 순서가 같아야 한다.");
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getAddress().getCity(), actual.getAddress().getCity(), "배송지가 채워져야 한다.");
+            assertEquals(expected.getOrderItems(), actual.getOrderItems(), "주문상품(상품 이름 포함)이 같아야 한다.");
+        }
+    }
+
+    @Test
+    public void 병렬_조회_페이징() throws Exception {
+        //when
+        List<OrderQueryDto> first = orderQueryRepository.findAllByDto_parallel(0, 1);
+        List<OrderQueryDto> second = orderQueryRepository.findAllByDto_parallel(1, 1);
+
+        //then
+        assertEquals(1, first.size(), "limit 만큼 조회해야 한다.");
+        assertEquals(1, second.size());
+        assertNotEquals(first.get(0).getOrderId(), second.get(0).getOrderId(), "offset 만큼 건너뛰어야 한다.");
+    }
+}
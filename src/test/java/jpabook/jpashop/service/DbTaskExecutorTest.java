@@ -0,0 +1,56 @@
+package jpabook.jpashop.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jpabook.jpashop.exception.TooManyRequestsException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DbTaskExecutorTest {
+
+    @Test
+    public void 큐가_가득차면_거절() throws Exception {
+        //given
+        HikariDataSource dataSource = new HikariDataSource();   //커넥션은 열지 않고 풀 크기만 읽는다
+        dataSource.setMaximumPoolSize(3);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        DbTaskExecutor executor = new DbTaskExecutor(dataSource, 2, 1, registry);  //스레드 1개, 큐 1개
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        //when
+        CompletableFuture<String> first = executor.supply("test", () -> {
+            running.countDown();
+            await(release);
+            return "first";
+        });
+        running.await(5, TimeUnit.SECONDS);
+        CompletableFuture<String> second = executor.supply("test", () -> "second");
+
+        //then
+        assertEquals(1, executor.getThreads(), "스레드 수는 커넥션 풀 크기 - 예약 커넥션 수");
+        assertEquals(1, registry.get("jpashop.db.executor.queued").tag("endpoint", "test").gauge().value(), "대기 중인 작업 수가 기록되어야 한다.");
+        assertThrows(TooManyRequestsException.class, () -> executor.supply("test", () -> "third"), "큐가 가득 차면 거절해야 한다.");
+        assertEquals(1, registry.get("jpashop.db.executor.rejected").tag("endpoint", "test").counter().count());
+
+        release.countDown();
+        assertEquals("first", first.get(5, TimeUnit.SECONDS));
+        assertEquals("second", second.get(5, TimeUnit.SECONDS));
+        assertEquals(0, registry.get("jpashop.db.executor.queued").tag("endpoint", "test").gauge().value());
+        executor.shutdown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
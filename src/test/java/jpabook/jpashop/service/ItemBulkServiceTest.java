@@ -0,0 +1,151 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Category;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * chunk 마다 새 트랜잭션으로 커밋하므로 @Transactional 없이 커밋된 데이터로 검증
+ */
+@SpringBootTest
+class ItemBulkServiceTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    ItemBulkService itemBulkService;
+    @Autowired
+    ItemService itemService;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    public void 카테고리_가격_일괄변경() throws Exception {
+        //given
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Book other = createBook("대량가격제외책", 10000, 10);
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            books.add(createBook("대량가격책" + i, 10000 + i * 5, 10));
+        }
+        Long categoryId = tx.execute(status -> {
+            Category category = new Category();
+            category.setName("대량가격");
+            books.forEach(book -> category.getItems().add(em.find(Item.class, book.getId())));
+            em.persist(category);
+            return category.getId();
+        });
+        Long version = itemService.findOne(books.get(0).getId()).getVersion();  //2차 캐시에 올려 둔다
+
+        //when
+        ItemBulkJob job = itemBulkService.changePriceByCategory(categoryId, -10);
+
+        //then
+        assertEquals(ItemBulkJob.Status.COMPLETED, job.getStatus());
+        assertEquals(3, job.getTotal());
+        assertEquals(3, job.getProcessed(), "카테고리 상품을 모두 처리해야 한다.");
+        assertEquals(3, job.getUpdated());
+        assertEquals(9000, itemService.findOne(books.get(0).getId()).getPrice(), "2차 캐시가 아닌 바뀐 가격이 보여야 한다.");
+        assertEquals(9005, itemService.findOne(books.get(1).getId()).getPrice(), "원 단위 반올림");
+        assertEquals(version + 1, itemService.findOne(books.get(0).getId()).getVersion(), "version 이 올라가야 한다.");
+        assertEquals(10000, itemService.findOne(other.getId()).getPrice(), "다른 카테고리 상품은 그대로");
+        assertEquals(9009, itemService.searchItems("대량가격책2", 1).get(0).getPrice(), "검색 인덱스도 바뀐 가격이어야 한다.");
+    }
+
+    @Test
+    public void 고가_상품_가격변경() throws Exception {
+        //given
+        Book book = createBook("대량고가책", 100_000_000, 10);
+        Long categoryId = createCategory("대량고가", book);
+        Book tooExpensive = createBook("대량최고가책", 2_000_000_000, 10);
+        Long tooExpensiveCategoryId = createCategory("대량최고가", tooExpensive);
+
+        //when
+        ItemBulkJob job = itemBulkService.changePriceByCategory(categoryId, 10);
+
+        //then
+        assertEquals(ItemBulkJob.Status.COMPLETED, job.getStatus());
+        assertEquals(110_000_000, itemService.findOne(book.getId()).getPrice(), "곱셈이 int 범위를 넘어도 가격이 맞아야 한다.");
+        assertThrows(BadRequestException.class, () -> itemBulkService.changePriceByCategory(tooExpensiveCategoryId, 10),
+                "변경 후 가격이 int 범위를 넘으면 시작하지 않는다.");
+        assertEquals(2_000_000_000, itemService.findOne(tooExpensive.getId()).getPrice());
+    }
+
+    @Test
+    public void 가격변경_이어서_실행() throws Exception {
+        //given - 첫 상품까지 커밋되고 실패한 작업
+        Book first = createBook("이어서가격책1", 10000, 10);
+        Book second = createBook("이어서가격책2", 20000, 10);
+        Long categoryId = createCategory("이어서가격", first, second);
+
+        //when
+        ItemBulkJob job = itemBulkService.changePriceByCategory(categoryId, 10, first.getId());
+
+        //then
+        assertEquals(1, job.getTotal(), "afterId 다음 상품만 대상이다.");
+        assertEquals(second.getId(), job.getLastCommittedId());
+        assertEquals(10000, itemService.findOne(first.getId()).getPrice(), "이미 변경된 상품에 다시 적용하지 않는다.");
+        assertEquals(22000, itemService.findOne(second.getId()).getPrice());
+    }
+
+    @Test
+    public void 재고_csv_import() throws Exception {
+        //given
+        Book book1 = createBook("재고import책1", 10000, 10);
+        Book book2 = createBook("재고import책2", 10000, 10);
+        assertEquals(10, itemService.findOne(book1.getId()).getStockQuantity());    //2차 캐시에 올려 둔다
+        String csv = "itemId,stockQuantity\n" +
+                book1.getId() + ",500\n" +
+                "잘못된줄\n" +
+                book2.getId() + ", 0\n" +
+                "999999999,5\n";
+
+        //when
+        ItemBulkJob job = itemBulkService.importStock(new StringReader(csv));
+
+        //then
+        assertEquals(ItemBulkJob.Status.COMPLETED, job.getStatus());
+        assertEquals(4, job.getProcessed(), "헤더를 뺀 모든 줄을 처리해야 한다.");
+        assertEquals(2, job.getUpdated());
+        assertEquals(2, job.getSkipped(), "잘못된 줄과 없는 상품은 건너뛴다.");
+        assertEquals(2, job.getErrors().size());
+        assertEquals(500, itemService.findOne(book1.getId()).getStockQuantity(), "2차 캐시가 아닌 import 한 재고가 보여야 한다.");
+        assertEquals(0, itemService.findOne(book2.getId()).getStockQuantity());
+    }
+
+    private Long createCategory(String name, Book... books) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            Category category = new Category();
+            category.setName(name);
+            for (Book book : books) {
+                category.getItems().add(em.find(Item.class, book.getId()));
+            }
+            em.persist(category);
+            return category.getId();
+        });
+    }
+
+    private Book createBook(String name, int price, int stockQuantity) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            Book book = new Book();
+            book.setName(name);
+            book.setPrice(price);
+            book.setStockQuantity(stockQuantity);
+            em.persist(book);
+            return book;
+        });
+    }
+}
@@ -0,0 +1,97 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.domain.item.Movie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ItemSearchIndexTest {
+
+    ItemSearchIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        index = new ItemSearchIndex(null, null);  //트랜잭션 밖에서 색인하면 바로 반영된다
+        index.index(book(1L, "JPA 프로그래밍", "김영한", "978-89-6077-732-6"));
+        index.index(book(2L, "Spring Boot 입문", "Kim", "111-1"));
+        index.index(movie(3L, "Spring Movie", "Jpa Director", "Actor Kim"));
+    }
+
+    @Test
+    public void prefix_검색_점수순() throws Exception {
+        //when
+        List<ItemSearchResult> result = index.search("jp", 10);
+
+        //then
+        assertEquals(2, result.size(), "prefix 로 일치하는 상품을 모두 찾아야 한다.");
+        assertEquals(Long.valueOf(1L), result.get(0).getItemId(), "상품명 일치가 감독 일치보다 점수가 높아야 한다.");
+        assertEquals(Long.valueOf(3L), result.get(1).getItemId());
+    }
+
+    @Test
+    public void 여러_토큰은_모두_일치() throws Exception {
+        //when
+        List<ItemSearchResult> result = index.search("spring KIM", 10);
+
+        //then
+        assertEquals(2, result.size());
+        assertEquals(Long.valueOf(2L), result.get(0).getItemId(), "저자 일치가 배우 일치보다 점수가 높아야 한다.");
+        assertTrue(index.search("spring 김영한", 10).isEmpty(), "모든 토큰과 일치하는 상품만 찾아야 한다.");
+    }
+
+    @Test
+    public void isbn_한글_검색() throws Exception {
+        assertEquals(Long.valueOf(1L), index.search("9788960777326", 10).get(0).getItemId(), "하이픈 없이 isbn 으로 찾아야 한다.");
+        assertEquals(Long.valueOf(1L), index.search("프로", 10).get(0).getItemId(), "한글도 prefix 로 찾아야 한다.");
+    }
+
+    @Test
+    public void 상위_k개() throws Exception {
+        //when
+        List<ItemSearchResult> result = index.search("spring", 1);
+
+        //then
+        assertEquals(1, result.size(), "limit 개수만큼만 반환해야 한다.");
+        assertEquals(Long.valueOf(2L), result.get(0).getItemId(), "점수가 같으면 id 순이다.");
+    }
+
+    @Test
+    public void 수정하면_이전_토큰은_제거() throws Exception {
+        //when
+        index.index(book(1L, "Hibernate 완벽 가이드", "김영한", null));
+
+        //then
+        List<Long> ids = index.search("jpa", 10).stream().map(ItemSearchResult::getItemId).collect(Collectors.toList());
+        assertFalse(ids.contains(1L), "수정 전 상품명으로는 검색되지 않아야 한다.");
+        assertEquals("Hibernate 완벽 가이드", index.search("hiber", 10).get(0).getName());
+        assertEquals(3, index.size());
+
+        index.delete(1L);
+        assertTrue(index.search("hiber", 10).isEmpty(), "삭제한 상품은 검색되지 않아야 한다.");
+    }
+
+    private Item book(Long id, String name, String author, String isbn) {
+        Book book = new Book();
+        book.setId(id);
+        book.setName(name);
+        book.setPrice(10000);
+        book.setAuthor(author);
+        book.setIsbn(isbn);
+        return book;
+    }
+
+    private Item movie(Long id, String name, String director, String actor) {
+        Movie movie = new Movie();
+        movie.setId(id);
+        movie.setName(name);
+        movie.setDirector(director);
+        movie.setActor(actor);
+        return movie;
+    }
+}
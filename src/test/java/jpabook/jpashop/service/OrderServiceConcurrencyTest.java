@@ -0,0 +1,88 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 트랜잭션 밖에서 동시에 주문 - 같은 상품의 재고 update 가 낙관적 락으로 충돌하면 재시도하고, 갱신 분실은 없어야 한다
+ */
+@SpringBootTest
+class OrderServiceConcurrencyTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    OrderService orderService;
+    @Autowired
+    ItemService itemService;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    public void 동시주문_재고차감() throws Exception {
+        //given
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Member member = tx.execute(status -> {
+            Member m = new Member();
+            m.setName("동시주문회원");
+            m.setAddress(new Address("서울", "강가", "123-123"));
+            em.persist(m);
+            return m;
+        });
+        Book book = tx.execute(status -> {
+            Book b = new Book();
+            b.setName("동시주문책");
+            b.setPrice(10000);
+            b.setStockQuantity(100);
+            em.persist(b);
+            return b;
+        });
+
+        //when
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(executor.submit(() -> orderService.order(member.getId(), book.getId(), 1)));
+        }
+        int success = 0;
+        for (Future<Long> future : futures) {
+            try {
+                future.get();
+                success++;
+            } catch (ExecutionException e) {
+                //재시도를 다 써도 충돌하면 낙관적 락 예외가 그대로 올라온다
+                assertTrue(e.getCause() instanceof OptimisticLockingFailureException, "충돌 외의 예외는 없어야 한다.");
+            }
+        }
+        executor.shutdown();
+
+        //then
+        assertTrue(success > 0, "주문이 하나 이상 성공해야 한다.");
+        assertEquals(100 - success, itemService.findOne(book.getId()).getStockQuantity(), "성공한 주문 수량만큼만 재고가 줄어야 한다.(lost update 없음)");
+        double conflicts = meterRegistry.find("jpashop.optimistic.conflicts").counters().stream()
+                .mapToDouble(c -> c.count()).sum();
+        double retries = meterRegistry.find("jpashop.optimistic.retries").counters().stream()
+                .mapToDouble(c -> c.count()).sum();
+        assertTrue(retries <= conflicts, "재시도 횟수는 충돌 횟수를 넘지 않는다.");
+    }
+}
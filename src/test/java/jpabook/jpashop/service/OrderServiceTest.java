@@ -1,21 +1,40 @@
 package jpabook.jpashop.service;
 
 import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.DeliveryStatus;
 import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.OrderSummary;
 import jpabook.jpashop.domain.item.Book;
 import jpabook.jpashop.domain.item.Item;
 import jpabook.jpashop.exception.NotEnoughStockException;
+import jpabook.jpashop.repository.NameMatch;
+import jpabook.jpashop.repository.OrderListDto;
+import jpabook.jpashop.repository.OrderSearchEngine;
 import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.repository.OrderSummaryRepository;
+import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import jpabook.jpashop.repository.order.query.OrderTotalByMemberDto;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -30,6 +49,14 @@ class OrderServiceTest {
     OrderService orderService;
     @Autowired
     OrderRepository orderRepository;
+    @Autowired
+    OrderSummaryRepository orderSummaryRepository;
+    @Autowired
+    MemberService memberService;
+    @Autowired
+    OrderQueryRepository orderQueryRepository;
+    @Autowired
+    OrderSearchEngine orderSearchEngine;
 
     @Test
     public void 상품주문() throws Exception {
@@ -93,6 +120,283 @@ class OrderServiceTest {
         assertEquals(10, item.getStockQuantity(), "주문이 취소된 상품은 그만큼 재고가 증가해야 한다.");
     }
 
+    @Test
+    public void 대량주문() throws Exception {
+        //given
+        Member member1 = createMember();
+        Member member2 = createMember();
+        Book book1 = createBook("JPA", 10000, 10);
+        Book book2 = createBook("SPRING", 20000, 10);
+
+        List<BulkOrderDto> orders = Arrays.asList(
+                new BulkOrderDto(member1.getId(), Arrays.asList(
+                        new BulkOrderDto.OrderLineDto(book1.getId(), 1),
+                        new BulkOrderDto.OrderLineDto(book2.getId(), 2))),
+                new BulkOrderDto(member2.getId(), Arrays.asList(
+                        new BulkOrderDto.OrderLineDto(book1.getId(), 3))));
+
+        //when
+        List<Long> orderIds = orderService.orderBulk(orders);
+
+        //then
+        assertEquals(2, orderIds.size(), "요청한 주문 수만큼 생성되어야 한다.");
+        Order first = orderRepository.findOne(orderIds.get(0));
+        assertEquals(2, first.getOrderItems().size(), "주문한 상품 종류 수가 정확해야 한다.");
+        assertEquals(10000 + 20000 * 2, first.getTotalPrice(), "주문 가격은 가격 * 수량의 합이다.");
+        assertEquals(member2, orderRepository.findOne(orderIds.get(1)).getMember(), "주문마다 회원이 지정되어야 한다.");
+        assertEquals(6, book1.getStockQuantity(), "같은 상품을 여러 주문에서 주문하면 합계만큼 재고가 줄어야 한다.");
+        assertEquals(8, book2.getStockQuantity(), "주문 수량만큼 재고가 줄어야 한다.");
+    }
+
+    @Test
+    public void 대량주문_재고수량초과() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook("JPA", 10000, 3);
+
+        List<BulkOrderDto> orders = Arrays.asList(
+                new BulkOrderDto(member.getId(), Arrays.asList(new BulkOrderDto.OrderLineDto(book.getId(), 2))),
+                new BulkOrderDto(member.getId(), Arrays.asList(new BulkOrderDto.OrderLineDto(book.getId(), 2))));
+
+        //when
+        NotEnoughStockException thrown = assertThrows(NotEnoughStockException.class,
+                () -> orderService.orderBulk(orders));
+
+        //then
+        assertEquals("need more stock", thrown.getMessage());   //합계가 재고를 넘으면 전체 실패
+    }
+
+    @Test
+    public void 주문요약_갱신() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook("JPA", 10000, 10);
+
+        //when
+        Long orderId = orderService.order(member.getId(), book.getId(), 2);
+        orderService.cancelOrder(orderId);
+        em.flush();
+        em.clear();     //요약 취소는 bulk update 라서 영속성 컨텍스트를 비우고 다시 읽는다
+
+        //then
+        OrderSummary summary = orderSummaryRepository.findById(orderId).get();
+        assertEquals("회원1", summary.getMemberName(), "주문 회원 이름이 저장되어야 한다.");
+        assertEquals("서울", summary.getAddress().getCity(), "배송 주소가 저장되어야 한다.");
+        assertEquals(20000, summary.getTotalPrice(), "주문 가격은 가격 * 수량이다.");
+        assertEquals(1, summary.getItemCount(), "주문한 상품 종류 수가 정확해야 한다.");
+        assertEquals(OrderStatus.CANCEL, summary.getStatus(), "취소하면 요약도 CANCEL 이어야 한다.");
+    }
+
+    @Test
+    public void 회원이름_변경_주문요약() throws Exception {
+        //given
+        Member member = createMember();
+        Member other = createMember();
+        Book book = createBook("JPA", 10000, 10);
+        Long orderId = orderService.order(member.getId(), book.getId(), 1);
+        Long otherOrderId = orderService.order(other.getId(), book.getId(), 1);
+
+        //when
+        memberService.update(member.getId(), "새이름");
+        em.flush();
+        em.clear();     //요약은 bulk update 라서 영속성 컨텍스트를 비우고 다시 읽는다
+
+        //then
+        assertEquals("새이름", orderSummaryRepository.findById(orderId).get().getMemberName(), "요약의 회원 이름도 바뀌어야 한다.");
+        assertEquals("회원1", orderSummaryRepository.findById(otherOrderId).get().getMemberName(), "다른 회원의 요약은 그대로");
+    }
+
+    @Test
+    public void 일괄_주문취소() throws Exception {
+        //given
+        Member member = createMember();
+        Book book1 = createBook("JPA", 10000, 10);
+        Book book2 = createBook("SPRING", 20000, 10);
+        Long orderId1 = orderService.order(member.getId(), book1.getId(), 2);
+        Long orderId2 = orderService.order(member.getId(), book1.getId(), 3);
+        Long orderId3 = orderService.order(member.getId(), book2.getId(), 4);
+        Long completedId = orderService.order(member.getId(), book2.getId(), 1);
+        orderRepository.findOne(completedId).getDelivery().setStatus(DeliveryStatus.COMP);
+
+        //when
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+                () -> orderService.cancelOrders(Arrays.asList(orderId1, completedId)));
+        List<Long> canceled = orderService.cancelOrdersOfMember(member.getId());
+        em.flush();
+        em.clear();     //상태/재고는 bulk update 라서 영속성 컨텍스트를 비우고 다시 읽는다
+
+        //then
+        assertTrue(thrown.getMessage().contains(String.valueOf(completedId)), "배송완료된 주문이 있으면 id 로 지정한 취소는 전체 실패한다.");
+        assertEquals(Arrays.asList(orderId1, orderId2, orderId3), canceled, "회원 주문 중 배송완료를 뺀 주문만 취소한다.");
+        assertEquals(OrderStatus.CANCEL, orderRepository.findOne(orderId2).getStatus());
+        assertEquals(OrderStatus.ORDER, orderRepository.findOne(completedId).getStatus(), "배송완료된 주문은 그대로");
+        assertEquals(10, em.find(Item.class, book1.getId()).getStockQuantity(), "같은 상품 주문은 합쳐서 재고를 복구해야 한다.");
+        assertEquals(9, em.find(Item.class, book2.getId()).getStockQuantity());
+        assertEquals(OrderStatus.CANCEL, orderSummaryRepository.findById(orderId3).get().getStatus(), "요약도 CANCEL 이어야 한다.");
+        assertTrue(orderService.cancelOrders(canceled).isEmpty(), "이미 취소된 주문은 건너뛴다.");
+    }
+
+    @Test
+    public void 회원별_주문합계() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook("JPA", 10000, 10);
+        orderService.order(member.getId(), book.getId(), 2);
+        orderService.order(member.getId(), book.getId(), 3);
+        Long canceledId = orderService.order(member.getId(), book.getId(), 1);
+        orderService.cancelOrder(canceledId);
+        em.flush();
+
+        //when
+        OrderTotalByMemberDto total = orderQueryRepository.findTotalsByMember().stream()
+                .filter(t -> t.getMemberId().equals(member.getId()))
+                .findFirst().get();
+
+        //then
+        assertEquals(2, total.getOrderCount(), "취소한 주문은 집계에서 빠져야 한다.");
+        assertEquals(50000, total.getTotalPrice(), "주문 가격의 합이어야 한다.");
+        assertEquals(10000, orderRepository.findOne(canceledId).getTotalPrice(), "취소해도 주문 금액은 남아있어야 한다.");
+    }
+
+    @Test
+    public void 회원이름_검색방식() throws Exception {
+        //given
+        Member member = createMember();
+        member.setName("Kim_Jpa");
+        Book book = createBook("JPA", 10000, 10);
+        Long orderId = orderService.order(member.getId(), book.getId(), 1);
+
+        List<Function<OrderSearch, List<Order>>> finders = Arrays.asList(
+                orderService::findOrders, orderService::findOrdersAllByString, orderService::findOrdersAllByCriteria);
+        for (Function<OrderSearch, List<Order>> finder : finders) {
+            //when then
+            assertFound(true, finder, "Kim_Jpa", NameMatch.EXACT);
+            assertFound(false, finder, "Kim", NameMatch.EXACT);
+            assertFound(true, finder, "Kim_", NameMatch.PREFIX);
+            assertFound(false, finder, "KimX", NameMatch.PREFIX);
+            assertFound(false, finder, "kim_", NameMatch.PREFIX);
+            assertFound(true, finder, "kim_J", NameMatch.IGNORE_CASE);
+            assertFound(true, finder, "_Jp", NameMatch.CONTAINS);
+            assertFound(false, finder, "%pa", NameMatch.CONTAINS);    //% 는 문자 그대로 비교
+            assertFound(true, finder, "Kim_", null);     //검색 방식이 없으면 PREFIX
+            assertFound(false, finder, "_Jp", null);
+        }
+    }
+
+    private void assertFound(boolean expected, Function<OrderSearch, List<Order>> finder, String name, NameMatch match) {
+        OrderSearch orderSearch = new OrderSearch();
+        orderSearch.setMemberName(name);
+        orderSearch.setNameMatch(match);
+        boolean found = finder.apply(orderSearch).stream()
+                .anyMatch(o -> o.getMember().getName().equals("Kim_Jpa"));
+        assertEquals(expected, found, match + " 검색 결과가 정확해야 한다. name=" + name);
+    }
+
+    @Test
+    public void 주문목록_페이징() throws Exception {
+        //given - 상품 2개짜리 주문 1건 + 상품 1개짜리 주문 2건
+        Member member = createMember();
+        member.setName("목록회원");
+        Book book1 = createBook("JPA", 10000, 10);
+        Book book2 = createBook("SPRING", 20000, 10);
+        BulkOrderDto multi = new BulkOrderDto();
+        multi.setMemberId(member.getId());
+        multi.getOrderItems().add(new BulkOrderDto.OrderLineDto(book1.getId(), 2));
+        multi.getOrderItems().add(new BulkOrderDto.OrderLineDto(book2.getId(), 1));
+        Long multiOrderId = orderService.orderBulk(Arrays.asList(multi)).get(0);
+        Long orderId2 = orderService.order(member.getId(), book2.getId(), 3);
+        Long orderId3 = orderService.order(member.getId(), book1.getId(), 1);
+        Delivery delivery = new Delivery();
+        delivery.setAddress(member.getAddress());
+        em.persist(Order.createOrder(member, delivery));    //주문상품이 없는 주문은 목록에도 건수에도 나오지 않는다
+        em.flush();
+        em.clear();
+
+        OrderSearch orderSearch = new OrderSearch();
+        orderSearch.setMemberName("목록회원");
+        orderSearch.setNameMatch(NameMatch.EXACT);
+
+        //when
+        Page<OrderListDto> first = orderService.findOrderList(orderSearch, PageRequest.of(0, 2));
+        Page<OrderListDto> last = orderService.findOrderList(orderSearch, PageRequest.of(1, 2));
+
+        //then
+        assertEquals(3, first.getTotalElements(), "주문상품 수와 관계없이 주문 건수로 센다");
+        assertEquals(2, first.getTotalPages());
+        assertEquals(Arrays.asList(orderId3, orderId2),
+                first.getContent().stream().map(OrderListDto::getOrderId).collect(Collectors.toList()),
+                "최근 주문부터 db 에서 페이징한다");
+        assertEquals(1, last.getContent().size());
+
+        OrderListDto row = last.getContent().get(0);
+        assertEquals(multiOrderId, row.getOrderId());
+        assertEquals("목록회원", row.getMemberName());
+        assertEquals("JPA", row.getItemName(), "대표상품은 첫 번째 주문상품이다");
+        assertEquals(10000, row.getOrderPrice());
+        assertEquals(2, row.getCount());
+        assertEquals(OrderStatus.ORDER, row.getStatus());
+    }
+
+    @Test
+    public void 주문검색_조건() throws Exception {
+        //given
+        Member member = createMember();
+        member.setName("검색회원");
+        Book jpa = createBook("JPA", 10000, 10);
+        Book spring = createBook("SPRING", 20000, 10);
+        Long jpaOrderId = orderService.order(member.getId(), jpa.getId(), 1);
+        Long springOrderId = orderService.order(member.getId(), spring.getId(), 2);
+        LocalDate today = LocalDate.now();
+
+        //when then
+        assertEquals(Arrays.asList(springOrderId, jpaOrderId), search(s -> s.setOrderDateFrom(today)), "오늘 이후 주문");
+        assertEquals(Collections.emptyList(), search(s -> s.setOrderDateTo(today.minusDays(1))), "어제까지 주문");
+        assertEquals(Arrays.asList(springOrderId), search(s -> s.setItemName("rin")), "상품 이름 포함 검색");
+        assertEquals(Arrays.asList(springOrderId), search(s -> s.setMinPrice(15000)), "최소 주문가격");
+        assertEquals(Arrays.asList(jpaOrderId), search(s -> s.setMaxPrice(15000)), "최대 주문가격");
+        assertEquals(Collections.emptyList(), search(s -> {
+            s.setItemName("JPA");
+            s.setMinPrice(15000);
+        }), "상품 이름과 가격은 같은 주문상품에 대한 조건");
+
+        OrderSearch listSearch = new OrderSearch();
+        listSearch.setMemberName("검색회원");
+        listSearch.setItemName("SPRING");
+        assertEquals(1, orderService.findOrderList(listSearch, PageRequest.of(0, 10)).getTotalElements(), "목록 화면도 같은 조건");
+    }
+
+    @Test
+    public void 주문검색_jpql_캐시() throws Exception {
+        //given
+        Member member = createMember();
+        member.setName("캐시회원");
+        Book book = createBook("JPA", 10000, 10);
+        Long orderId = orderService.order(member.getId(), book.getId(), 1);
+        search(s -> s.setMinPrice(1));
+        long hits = orderSearchEngine.getPlanCacheHits();
+        long misses = orderSearchEngine.getPlanCacheMisses();
+
+        //when - 같은 조건 모양, 다른 값
+        List<Long> found = search(s -> s.setMinPrice(5000));
+
+        //then
+        assertEquals(Arrays.asList(orderId), found);
+        assertEquals(hits + 1, orderSearchEngine.getPlanCacheHits(), "같은 조건 모양은 캐시된 jpql 을 쓴다");
+        assertEquals(misses, orderSearchEngine.getPlanCacheMisses());
+    }
+
+    //회원 이름(정확히 일치) + 추가 조건으로 검색한 주문 id
+    private List<Long> search(Consumer<OrderSearch> condition) {
+        OrderSearch orderSearch = new OrderSearch();
+        orderSearch.setMemberName(em.createQuery("select m.name from Member m order by m.id desc", String.class)
+                .setMaxResults(1).getSingleResult());
+        orderSearch.setNameMatch(NameMatch.EXACT);
+        condition.accept(orderSearch);
+        return orderService.findOrders(orderSearch).stream()
+                .map(Order::getId)
+                .collect(Collectors.toList());
+    }
+
     private Book createBook(String name, int price, int stockQuantity) {
         Book book = new Book();
         book.setName(name);
@@ -0,0 +1,181 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 엔진은 커밋/롤백 후에 카운터를 바꾸므로 @Transactional 없이 트랜잭션을 직접 열어 검증
+ * flush 스레드 없이(start 호출 안 함) flush 를 직접 호출한다
+ */
+@SpringBootTest
+class StockReservationEngineTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    EntityManagerFactory emf;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    StockReservationEngine engine;
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void setUp() {
+        engine = new StockReservationEngine(true, 100, jdbcTemplate, transactionManager, emf);
+        tx = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    public void 예약_커밋후_flush() throws Exception {
+        //given
+        Book book = createBook(10);
+
+        //when
+        tx.executeWithoutResult(status -> engine.reserve(book, 3));
+        tx.executeWithoutResult(status -> engine.reserve(book, 4));
+
+        //then
+        assertEquals(7, engine.pendingOf(book.getId()), "커밋된 차감량이 pending 에 쌓여야 한다.");
+        assertEquals(10, stockInDb(book), "flush 전에는 db 재고가 그대로다.");
+        engine.flush();
+        assertEquals(3, stockInDb(book), "flush 하면 합친 차감량이 반영되어야 한다.");
+        assertEquals(0, engine.pendingOf(book.getId()));
+        assertThrows(NotEnoughStockException.class, () -> engine.reserve(book, 4), "남은 재고보다 많이 예약할 수 없다.");
+    }
+
+    @Test
+    public void 예약_롤백() throws Exception {
+        //given
+        Book book = createBook(5);
+
+        //when
+        tx.executeWithoutResult(status -> {
+            engine.reserve(book, 5);
+            status.setRollbackOnly();
+        });
+
+        //then
+        assertEquals(0, engine.pendingOf(book.getId()), "롤백된 예약은 pending 에 남지 않는다.");
+        tx.executeWithoutResult(status -> engine.reserve(book, 5));   //카운터가 복구되어 다시 예약 가능
+        engine.flush();
+        assertEquals(0, stockInDb(book));
+    }
+
+    @Test
+    public void flush_재고조건_실패() throws Exception {
+        //given
+        Book book = createBook(10);
+        tx.executeWithoutResult(status -> engine.reserve(book, 5));
+        jdbcTemplate.update("update item set stock_quantity = 2 where item_id = ?", book.getId());   //엔진 밖에서 재고 감소
+
+        //when
+        engine.flush();
+
+        //then
+        assertEquals(2, stockInDb(book), "재고가 모자라면 반영하지 않는다.");
+        assertEquals(5, engine.pendingOf(book.getId()), "커밋된 차감량은 버리지 않고 남겨야 한다.");
+        assertEquals(1, engine.getFlushFailures(), "반영 실패를 알려야 한다.");
+        assertThrows(NotEnoughStockException.class, () -> engine.reserve(reload(book), 1), "db 재고 - pending 이 0 보다 작으니 초과 판매하지 않는다.");
+
+        jdbcTemplate.update("update item set stock_quantity = 10 where item_id = ?", book.getId());  //재고 보충
+        engine.flush();
+        assertEquals(5, stockInDb(book), "남겨 둔 차감량이 다음 flush 에 반영되어야 한다.");
+        assertEquals(0, engine.pendingOf(book.getId()));
+    }
+
+    @Test
+    public void 예약_커밋전_evict() throws Exception {
+        //given
+        Book book = createBook(10);
+        Book stale = reload(book);  //2차 캐시에 재고 10 으로 올라가 있다
+
+        //when - 예약하고 커밋하기 전에 다른 스레드에서 상품 수정(evict) 후 예약
+        tx.executeWithoutResult(status -> {
+            engine.reserve(book, 10);
+            runInOtherThread(() -> engine.evict(book.getId()));
+            runInOtherThread(() -> assertThrows(NotEnoughStockException.class,
+                    () -> tx.executeWithoutResult(s -> engine.reserve(stale, 10)),
+                    "커밋 전 예약량도 빼고 카운터를 다시 만들어야 한다."));
+        });
+
+        //then
+        assertEquals(10, engine.pendingOf(book.getId()));
+        engine.flush();
+        assertEquals(0, stockInDb(book));
+        assertEquals(0, engine.getFlushFailures(), "초과 판매가 없으니 반영에 실패하지 않는다.");
+    }
+
+    @Test
+    public void 롤백_전_카운터_재생성() throws Exception {
+        //given
+        Book book = createBook(10);
+
+        //when - 예약 후 카운터가 다시 만들어지고 나서 롤백
+        tx.executeWithoutResult(status -> {
+            engine.reserve(book, 6);
+            runInOtherThread(() -> engine.evict(book.getId()));
+            runInOtherThread(() -> tx.executeWithoutResult(s -> engine.reserve(book, 4)));
+            status.setRollbackOnly();
+        });
+
+        //then
+        tx.executeWithoutResult(status -> engine.reserve(book, 6));   //롤백한 6 은 새 카운터로 돌아온다
+        assertThrows(NotEnoughStockException.class, () -> engine.reserve(book, 1));
+        engine.flush();
+        assertEquals(0, stockInDb(book));
+    }
+
+    //호출한 스레드의 트랜잭션 밖에서 실행 (다른 요청)
+    private static void runInOtherThread(Runnable task) {
+        try {
+            CompletableFuture.runAsync(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();     //assert 실패
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private int stockInDb(Book book) {
+        return jdbcTemplate.queryForObject("select stock_quantity from item where item_id = ?", Integer.class, book.getId());
+    }
+
+    //엔진 밖 변경은 2차 캐시에 없으므로 비우고 db 에서 다시 읽는다
+    private Book reload(Book book) {
+        emf.getCache().evict(Item.class, book.getId());
+        return tx.execute(status -> em.find(Book.class, book.getId()));
+    }
+
+    private Book createBook(int stockQuantity) {
+        return tx.execute(status -> {
+            Book book = new Book();
+            book.setName("예약엔진책");
+            book.setPrice(10000);
+            book.setStockQuantity(stockQuantity);
+            em.persist(book);
+            return book;
+        });
+    }
+}
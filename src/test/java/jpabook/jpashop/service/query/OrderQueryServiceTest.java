@@ -0,0 +1,130 @@
+package jpabook.jpashop.service.query;
+
+import jpabook.jpashop.api.OrderApiController;
+import jpabook.jpashop.api.OrderSimpleApiController;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.exception.BadRequestException;
+import jpabook.jpashop.monitoring.SqlStats;
+import jpabook.jpashop.monitoring.SqlStatsRecorder;
+import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.service.OrderService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class OrderQueryServiceTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    OrderQueryService orderQueryService;
+    @Autowired
+    OrderService orderService;
+    @Autowired
+    OrderRepository orderRepository;
+    @Autowired
+    OrderApiController orderApiController;
+    @Autowired
+    OrderSimpleApiController orderSimpleApiController;
+
+    @Test
+    public void 커서_페이징_같은_주문일() throws Exception {
+        //given - 주문일이 같은 주문 3건
+        Member member = new Member();
+        member.setName("커서회원");
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        em.persist(member);
+        Book book = new Book();
+        book.setName("커서책");
+        book.setPrice(10000);
+        book.setStockQuantity(10);
+        em.persist(book);
+        LocalDateTime sameDate = LocalDateTime.of(2020, 1, 1, 12, 0);
+        List<Long> tied = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Long orderId = orderService.order(member.getId(), book.getId(), 1);
+            orderRepository.findOne(orderId).setOrderDate(sameDate);
+            tied.add(orderId);
+        }
+        em.flush();
+
+        //when - 한 건씩 끝까지
+        List<Long> visited = new ArrayList<>();
+        String cursor = null;
+        do {
+            OrderCursorPage page = orderQueryService.ordersV3Cursor(cursor, 1);
+            page.getData().forEach(order -> visited.add(order.getOrderId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        //then
+        assertEquals(visited.size(), new LinkedHashSet<>(visited).size(), "같은 주문일이어도 중복 없이 조회해야 한다.");
+        assertEquals(tied, visited.stream().filter(tied::contains).collect(Collectors.toList()),
+                "주문일이 같으면 order id 순으로 빠짐없이 조회해야 한다.");
+    }
+
+    @Test
+    public void v2_1_연관관계_일괄조회() throws Exception {
+        //given - 회원, 상품이 모두 다른 주문 3건, 영속성 컨텍스트를 비워 연관관계가 프록시로 남게 한다
+        for (int i = 0; i < 3; i++) {
+            Member member = new Member();
+            member.setName("일괄조회회원" + i);
+            member.setAddress(new Address("서울", "강가", "123-123"));
+            em.persist(member);
+            Book book = new Book();
+            book.setName("일괄조회책" + i);
+            book.setPrice(10000);
+            book.setStockQuantity(10);
+            em.persist(book);
+            orderService.order(member.getId(), book.getId(), 1);
+        }
+        em.flush();
+        em.clear();
+
+        //when
+        SqlStats stats = SqlStats.open(SqlStatsRecorder.METHOD);
+        List<OrderDto> orders;
+        try {
+            orders = orderApiController.ordersV2_batch();
+        } finally {
+            stats.close();
+        }
+        em.clear();
+        SqlStats simpleStats = SqlStats.open(SqlStatsRecorder.METHOD);
+        try {
+            orderSimpleApiController.ordersV2_batch();
+        } finally {
+            simpleStats.close();
+        }
+
+        //then
+        assertTrue(orders.stream().anyMatch(o -> o.getOrderName().equals("일괄조회회원2")
+                        && o.getOrderItems().get(0).getItemName().equals("일괄조회책2")), "연관관계가 채워져야 한다.");
+        assertTrue(stats.getStatements() <= 5, "주문 + 회원 + 배송 + 주문상품 + 상품, 실행 sql=" + stats.getStatements());
+        assertTrue(stats.repeatedSelects(2).isEmpty(), "같은 모양의 select 가 반복되면 안 된다. " + stats.repeatedSelects(2));
+        assertTrue(simpleStats.getStatements() <= 3, "주문 + 회원 + 배송, 실행 sql=" + simpleStats.getStatements());
+        assertTrue(simpleStats.repeatedSelects(2).isEmpty(), "같은 모양의 select 가 반복되면 안 된다. " + simpleStats.repeatedSelects(2));
+    }
+
+    @Test
+    public void 잘못된_커서와_limit() throws Exception {
+        //when, then - 400 으로 응답하는 예외
+        assertThrows(BadRequestException.class, () -> orderQueryService.ordersV3Cursor("잘못된커서", 10));
+        assertThrows(BadRequestException.class, () -> orderQueryService.ordersV3Cursor(null, 0));
+        assertThrows(BadRequestException.class, () -> orderQueryService.ordersV3Cursor(null, 1001));
+    }
+}